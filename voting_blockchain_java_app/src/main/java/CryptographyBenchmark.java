@@ -0,0 +1,62 @@
+import app.resources.util.Cryptography;
+
+import java.security.*; // KeyPair, MessageDigest, Signature, PublicKey
+import java.util.Base64;
+
+/*
+Compares a provider lookup per call ( Signature.getInstance / MessageDigest.getInstance, as the call sites used to do )
+against the thread-local engines in Cryptography.
+
+JMH is not a dependency of this project, so this is a plain warm-up-then-measure loop. Run it on its own like TestingNode1.
+ */
+public class CryptographyBenchmark {
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int MEASURED_ITERATIONS = 10_000;
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        KeyPair keyPair = Cryptography.generateKeyPair();
+        PublicKey publicKey = keyPair.getPublic();
+        byte[] data = "voter|||5".getBytes();
+
+        Signature signer = Signature.getInstance("SHA256withRSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(data);
+        String signatureString = Base64.getEncoder().encodeToString(signer.sign());
+
+        // Digest
+        report("hash: getInstance per call", () -> MessageDigest.getInstance("SHA-256").digest(data));
+        report("hash: thread-local engine ", () -> Cryptography.digestEngine().digest(data));
+
+        // Verify
+        report("verify: getInstance per call", () -> {
+            Signature verifier = Signature.getInstance("SHA256withRSA");
+            verifier.initVerify(publicKey);
+            verifier.update(data);
+            verifier.verify(Base64.getDecoder().decode(signatureString));
+        });
+        report("verify: thread-local engine ", () -> {
+            Signature verifier = Cryptography.signatureEngine();
+            verifier.initVerify(publicKey);
+            verifier.update(data);
+            verifier.verify(Base64.getDecoder().decode(signatureString));
+        });
+    }
+
+    private static void report(String name, Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%s\t%,.0f ns/op%n", name, (double) elapsed / MEASURED_ITERATIONS);
+    }
+}
@@ -10,9 +10,15 @@ import app.resources.JSONParsers.*;
 import app.resources.blockchain.resources.Block;
 import app.resources.blockchain.resources.Vote;
 
+import app.resources.exceptions.InvalidException;
 import app.resources.exceptions.PersistenceException;
 
+import app.resources.util.Cryptography;
+import app.resources.util.EventExecutor;
+
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 public class LocalNode {
     // Fields
@@ -27,6 +33,7 @@ public class LocalNode {
     private Blockchain blockchain; // Hold election information immutably ( not final for consensus )
     private final WebServer webServer; // Communicated with webpage
     private final ControlServer controlServer; // Allow owner to interact with the blockchain
+    private final EventExecutor eventExecutor = new EventExecutor(); // Runs per-event tasks ( virtual threads when available )
 
 
     // Initialisation
@@ -69,8 +76,60 @@ public class LocalNode {
         return BlockchainParser.BlockchainToJSON(blockchain);
     }
 
+    public JSONObject getBlockchainHeadJSON(){
+        return BlockchainParser.blockchainHeadToJSON(blockchain);
+    }
+
+    // ( null if the chains diverge below 'fromHeight' )
+    public JSONObject getBlocksFromJSON(int fromHeight, String previousHash, int maxBlocks){
+        List<Block> blocks = blockchain.getBlocksFrom(fromHeight, previousHash, maxBlocks);
+        if (blocks == null) {
+            return null;
+        }
+
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("blocks", BlockchainParser.chainToJSON(blocks));
+        return jsonObject;
+    }
+
+    public JSONObject getHeaderChainJSON(int fromHeight, int maxHeaders){
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("headers", BlockchainParser.headerChainToJSON(blockchain.getBlocks(fromHeight, maxHeaders)));
+        return jsonObject;
+    }
+
+    public JSONObject getSyncProgressJSON(){
+        return MetricsParser.headerSyncToJSON(networkManager.getHeaderSync());
+    }
+
+    // ( vote id -> vote )
+    public Map<String, Vote> getPendingVotesById() {
+        return blockchain.getPendingVotesById();
+    }
+
+    public EventExecutor getEventExecutor(){
+        return eventExecutor;
+    }
+
     public JSONObject getNetworkPeersJSON(){
-        return NetworkParser.knownPeersToJSON(networkManager.getKnownPeers());
+        JSONObject jsonObject = NetworkParser.knownPeersToJSON(networkManager.getKnownPeers());
+        jsonObject.put("peer_stats", MetricsParser.peerHealthToJSON(networkManager.getPeerHealth()));
+        return jsonObject;
+    }
+
+    public JSONObject getMetricsJSON(){
+        JSONObject metrics = new JSONObject();
+        metrics.put("mining", MetricsParser.minerToJSON(blockchain.getMiner()));
+        metrics.put("public_key_cache", MetricsParser.boundedCacheToJSON(Cryptography.getPublicKeyCache()));
+        metrics.put("verified_signature_cache", MetricsParser.boundedCacheToJSON(Vote.getVerifiedSignatures()));
+        metrics.put("message_cache", MetricsParser.messageCacheToJSON(networkManager.getMessageCache()));
+        metrics.put("message_validation", MetricsParser.messageValidatorToJSON(networkManager.getMessageValidator()));
+        metrics.put("orphan_pool", MetricsParser.orphanPoolToJSON(blockchain.getOrphanPool()));
+        metrics.put("message_receiver", MetricsParser.messageReceiverToJSON(networkManager.getMessageReceiver()));
+        metrics.put("event_executor", MetricsParser.eventExecutorToJSON(eventExecutor));
+        metrics.put("gossip", MetricsParser.gossipEngineToJSON(networkManager.getGossipEngine()));
+        metrics.put("inventory", MetricsParser.peerInventoryToJSON(networkManager.getPeerInventory()));
+        return metrics;
     }
 
     public void connectToNewPeer(String host, int port){
@@ -105,6 +164,34 @@ public class LocalNode {
         }, "Consensus-Thread");
         consensusThread.start();
 
+        // ( Pings Known Peers Every 15 Seconds )
+        Thread pingThread = new Thread(() -> {
+            while (true) {
+                try {
+                    //noinspection BusyWait
+                    Thread.sleep(15000);
+                } catch (InterruptedException e) {
+                    logger.error("Error with ping thread: ", e);
+                }
+                networkManager.sendPingMessage();
+            }
+        }, "Ping-Thread");
+        pingThread.start();
+
+        // ( Exchanges Pending Vote Digests With A Peer Every 20 Seconds )
+        Thread antiEntropyThread = new Thread(() -> {
+            while (true) {
+                try {
+                    //noinspection BusyWait
+                    Thread.sleep(20000);
+                } catch (InterruptedException e) {
+                    logger.error("Error with anti-entropy thread: ", e);
+                }
+                networkManager.getGossipEngine().runAntiEntropy();
+            }
+        }, "AntiEntropy-Thread");
+        antiEntropyThread.start();
+
         // ( Persists Blockchain Every Minute )
         Thread persistenceThread = new Thread(() -> {
             while (true) {
@@ -145,18 +232,10 @@ public class LocalNode {
     public void handleWebVote(Vote vote){
         logger.info("Vote received from web server");
         logger.info("Vote sent to blockchain pending votes");
-        Thread blockchainThread = new Thread(() -> {
-
-            blockchain.handleNewVote(vote);
-
-        });
-        blockchainThread.start();
+        eventExecutor.submit(() -> blockchain.handleNewVote(vote));
 
         logger.info("Vote sent to network for distribution");
-        Thread networkThread = new Thread(() -> {
-            networkManager.formulateOutgoingVote(vote);
-        });
-        networkThread.start();
+        eventExecutor.submit(() -> networkManager.formulateOutgoingVote(vote));
     }
 
     public void handleWebVoter(String voter){
@@ -165,21 +244,14 @@ public class LocalNode {
         sendVoterToBlockchain(voter);
 
         logger.info("new voter sent to network for distribution");
-        Thread networkThread = new Thread(() -> {
-
-            networkManager.formulateOutgoingVoter(voter);
-        });
-        networkThread.start();
+        eventExecutor.submit(() -> networkManager.formulateOutgoingVoter(voter));
 
     }
 
     public void handleNewBlock(Block block){
         logger.info("New block received from blockchain");
         logger.info("New block sent to network for distribution");
-        Thread networkThread = new Thread(() -> {
-            networkManager.formulateOutgoingBlock(block);
-        });
-        networkThread.start();
+        eventExecutor.submit(() -> networkManager.formulateOutgoingBlock(block));
 
 
     }
@@ -195,11 +267,7 @@ public class LocalNode {
         }
 
 
-        Thread blockchainThread = new Thread(() -> {
-            blockchain.handleNewVoter(voter);
-        });
-
-        blockchainThread.start();
+        eventExecutor.submit(() -> blockchain.handleNewVoter(voter));
     }
 
 
@@ -207,10 +275,7 @@ public class LocalNode {
     public void handleNetworkVote(Vote vote){
         logger.info("Vote received from network");
         logger.info("Vote sent to blockchain pending votes");
-        Thread networkThread = new Thread(() -> {
-            blockchain.handleNewVote(vote);
-        });
-        networkThread.start();
+        eventExecutor.submit(() -> blockchain.handleNewVote(vote));
     }
 
     public void handleNetworkVoter(String voter){
@@ -220,14 +285,17 @@ public class LocalNode {
     public void handleNetworkBlock(Block block){
         logger.info("Block received from network");
         logger.info("Block sent to blockchain for review");
-        Thread blockchainThread = new Thread(() -> {
-            blockchain.handleNewBlock(block);
-        });
-        blockchainThread.start();
+        eventExecutor.submit(() -> blockchain.handleNewBlock(block));
     }
 
     // ( Performing consensus mechanism )
 
+    // ( blocks fetched by delta sync, returns how many extended the chain )
+    public int handleNetworkBlocks(List<Block> blocks) {
+        logger.info("{} blocks received from network sync", blocks.size());
+        return blockchain.handleSyncedBlocks(blocks);
+    }
+
     public void handleNetworkBlockchain(Blockchain newBlockchain) {
         logger.info("New blockchain received from network");
         if(newBlockchain.getLength() < blockchain.getLength()){
@@ -235,16 +303,37 @@ public class LocalNode {
             return;
         }
 
-        if(newBlockchain.getDifficulty() < blockchain.getDifficulty()){
+        // ( compares expected work, so Base64-prefix and zero-bit difficulties are comparable )
+        if(newBlockchain.getWorkBits() < blockchain.getWorkBits()){
             logger.info("New blockchain discarded: difficulty shorter");
             return;
         }
 
-        if((newBlockchain.getLength() == blockchain.getLength()) && (newBlockchain.getDifficulty() == blockchain.getDifficulty())){
+        if((newBlockchain.getLength() == blockchain.getLength()) && (newBlockchain.getWorkBits() == blockchain.getWorkBits())){
             logger.info("New blockchain discarded: difficulty and length equal");
             return;
         }
 
+        // Same difficulty rules - only the blocks after the common ancestor are replaced
+        if ((newBlockchain.getDifficulty() == blockchain.getDifficulty()) && (newBlockchain.getDifficultyVersion() == blockchain.getDifficultyVersion())) {
+            try {
+                blockchain.reorganise(newBlockchain.getChain(), newBlockchain.getRemainingVoters());
+            } catch (InvalidException e) {
+                logger.info("New blockchain discarded: " + e.getMessage());
+                return;
+            }
+            logger.info("New blockchain accepted");
+            return;
+        }
+
+        // Different difficulty rules - the whole blockchain is adopted
+        try {
+            newBlockchain.isValid();
+        } catch (InvalidException e) {
+            logger.info("New blockchain discarded: " + e.getMessage());
+            return;
+        }
+
         logger.info("New blockchain accepted");
         blockchain = newBlockchain;
     }
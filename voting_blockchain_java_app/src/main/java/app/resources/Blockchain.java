@@ -1,6 +1,10 @@
 package app.resources;
 
 import app.LocalNode;
+import app.resources.blockchain.ChainValidator;
+import app.resources.blockchain.Miner;
+import app.resources.blockchain.OrphanPool;
+import app.resources.blockchain.ProofOfWork;
 import app.resources.blockchain.resources.Block;
 import app.resources.blockchain.resources.Vote;
 import app.resources.exceptions.InvalidException;
@@ -9,7 +13,11 @@ import app.resources.exceptions.InvalidException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.*; // List, ArrayList, Set, HashSet, Queue
+import java.security.NoSuchAlgorithmException;
+import java.util.*; // List, ArrayList, Set, HashSet, Queue, Map, HashMap, Collections
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
 
 public class Blockchain {
 
@@ -17,21 +25,35 @@ public class Blockchain {
     private final LocalNode localNode;
 
     private final int difficulty;
+    private final int difficultyVersion; // How difficulty is measured ( see ProofOfWork )
     private final List<Block> chain;
-    private final Queue<Vote> pendingVotes;
+    private final Queue<Vote> pendingVotes; // ( concurrent - added to by network events while miners drain it )
+    private final Map<String, Vote> pendingVotesById = new ConcurrentHashMap<>(); // Vote id -> vote, for every vote in pendingVotes
     private final Set<String> remainingVoters;
 
+    private int validatedHeight; // Number of blocks from genesis that have been fully validated on this node
+
+    private final Map<String, Integer> heightsByHash = new HashMap<>(); // Block hash -> index in chain
+
+    // ( guards chain, heightsByHash, remainingVoters and validatedHeight - held only while they change, never while validating or mining )
+    private final Object chainLock = new Object();
+
+    private final Miner miner = new Miner(); // Parallel nonce search ( one worker per core )
+    private final ChainValidator validator = new ChainValidator(); // Parallel whole-chain validation
+    private final OrphanPool orphanPool = new OrphanPool(512); // Blocks received before their parent
+
     private final Logger logger = LoggerFactory.getLogger(Blockchain.class);
 
     // Load new blockchain ( without possible voters )
     public Blockchain(LocalNode localNode) {
         this.localNode = localNode;
 
-        this.difficulty = 4;
+        this.difficulty = 24;
+        this.difficultyVersion = ProofOfWork.LEADING_ZERO_BITS;
         this.chain = new ArrayList<>();
         createGenesisBlock();
         this.remainingVoters = new HashSet<>();
-        this.pendingVotes = new LinkedList<>();
+        this.pendingVotes = new ConcurrentLinkedQueue<>();
 
     }
 
@@ -39,21 +61,29 @@ public class Blockchain {
     public Blockchain(LocalNode localNode, Set<String> remainingVoters){
         this.localNode = localNode;
 
-        this.difficulty = 4;
+        this.difficulty = 24;
+        this.difficultyVersion = ProofOfWork.LEADING_ZERO_BITS;
         this.chain = new ArrayList<>();
         createGenesisBlock();
         this.remainingVoters = remainingVoters;
-        this.pendingVotes = new LinkedList<>();
+        this.pendingVotes = new ConcurrentLinkedQueue<>();
     }
 
     // Load existing blockchain
-    public Blockchain(LocalNode localNode, int difficulty, List<Block> chain, Set<String> remainingVoters, Queue<Vote> pendingVotes) {
+    public Blockchain(LocalNode localNode, int difficulty, int difficultyVersion, List<Block> chain, Set<String> remainingVoters, Queue<Vote> pendingVotes) {
         this.localNode = localNode;
 
         this.difficulty = difficulty;
+        this.difficultyVersion = difficultyVersion;
         this.chain = chain;
+        for (int i = 0; i < chain.size(); i++) {
+            heightsByHash.put(chain.get(i).getHash(), i);
+        }
         this.remainingVoters = remainingVoters;
-        this.pendingVotes = pendingVotes;
+        this.pendingVotes = new ConcurrentLinkedQueue<>();
+        for (Vote vote : pendingVotes) {
+            addPendingVote(vote);
+        }
     }
 
 
@@ -62,31 +92,60 @@ public class Blockchain {
         return difficulty;
     }
 
+    public int getDifficultyVersion() {
+        return difficultyVersion;
+    }
+
+    // ( expected work per block, comparable across difficulty versions )
+    public int getWorkBits() {
+        return ProofOfWork.workBits(difficulty, difficultyVersion);
+    }
+
+    // Miner
+    public Miner getMiner() {
+        return miner;
+    }
+
+    // Orphan Pool
+    public OrphanPool getOrphanPool() {
+        return orphanPool;
+    }
+
     // Chain
+
+    // ( snapshot )
     public List<Block> getChain() {
-        return chain;
+        synchronized (chainLock) {
+            return new ArrayList<>(chain);
+        }
     }
 
     public int getLength() {
-        return chain.size();
+        synchronized (chainLock) {
+            return chain.size();
+        }
     }
 
     public Block getLastBlock() {
-        if (chain.isEmpty()) {
-            return null;
+        synchronized (chainLock) {
+            if (chain.isEmpty()) {
+                return null;
+            }
+            return chain.get(chain.size() - 1);
         }
-        return chain.get(chain.size() - 1);
     }
 
     public void createGenesisBlock() {
         List<Vote>  noVotes = new ArrayList<>();
-        Block newBlock = new Block("0".repeat(difficulty), noVotes);
+        Block newBlock = new Block("0".repeat(4), noVotes);
         try {
-            newBlock.mineBlock(difficulty);
+            newBlock.mineBlock(difficulty, difficultyVersion, miner);
         } catch (InvalidException e) {
             throw new RuntimeException();
         }
-        chain.add(newBlock);
+        synchronized (chainLock) {
+            appendValidatedBlock(newBlock);
+        }
     }
 
     public void createNewBlock() {
@@ -103,24 +162,40 @@ public class Blockchain {
 
         // Implement vote tracking
 
-        while (!pendingVotes.isEmpty()) {
-            Vote vote = pendingVotes.poll();
-            String voter = vote.getVoter();
+        // Drain pending votes ( keeping queue order )
+        List<Vote> drainedVotes = new ArrayList<>();
+        Vote drainedVote;
+        while ((drainedVote = pendingVotes.poll()) != null) {
+            pendingVotesById.remove(voteId(drainedVote), drainedVote);
+            drainedVotes.add(drainedVote);
+        }
 
-            try{
-                vote.isValid();
-            } catch(InvalidException e){
-                logger.warn("Invalid vote from {}", voter, e);
-                discardedVotes.add(vote.serialise());
-                continue;
-            }
-
-            if (removeVoter(voter)) {
-                votesForBlock.add(vote);
-            } else {
-                logger.warn("Voter {} not found", voter);
-                discardedVotes.add(vote.serialise());
+        // Verify signatures in parallel
+        InvalidException[] verificationFailures = verifyVotes(drainedVotes);
+
+        // Apply results in queue order ( so the first vote from a voter is the one accepted )
+        // ( voters are only removed once the block is appended, as the tip may change while it is mined )
+        Set<String> votersInBlock = new HashSet<>();
+        Block lastBlock;
+        synchronized (chainLock) {
+            for (int i = 0; i < drainedVotes.size(); i++) {
+                Vote vote = drainedVotes.get(i);
+                String voter = vote.getVoter();
+
+                if (verificationFailures[i] != null) {
+                    logger.warn("Invalid vote from {}", voter, verificationFailures[i]);
+                    discardedVotes.add(vote.serialise());
+                    continue;
+                }
+
+                if (remainingVoters.contains(voter) && votersInBlock.add(voter)) {
+                    votesForBlock.add(vote);
+                } else {
+                    logger.warn("Voter {} not found", voter);
+                    discardedVotes.add(vote.serialise());
+                }
             }
+            lastBlock = getLastBlock();
         }
 
         if (votesForBlock.isEmpty()) {
@@ -130,21 +205,30 @@ public class Blockchain {
         }
 
         // Create
-        Block lastBlock = getLastBlock();
         Block newBlock = new Block(lastBlock.getHash(), votesForBlock);
 
         // Mine
         try {
-            newBlock.mineBlock(difficulty);
+            newBlock.mineBlock(difficulty, difficultyVersion, miner);
         }  catch (InvalidException e) {
             logger.warn("Failed to create new block: unable to mine block: " + e.getMessage());
+            returnToPendingVotes(votesForBlock);
             return;
         }
 
         logger.info("Block successfully mined");
 
-        // Add
-        chain.add(newBlock);
+        // Add ( only if no other block was added while mining, and none of its voters has voted since )
+        synchronized (chainLock) {
+            if (getLastBlock() != lastBlock || !remainingVoters.containsAll(votersInBlock)) {
+                logger.info("Mined block discarded: chain tip changed while mining");
+                returnToPendingVotes(votesForBlock);
+                return;
+            }
+
+            remainingVoters.removeAll(votersInBlock);
+            appendValidatedBlock(newBlock);
+        }
 
         // Logging
         logAcceptedVotes(votesForBlock);
@@ -155,6 +239,29 @@ public class Blockchain {
     }
 
     // CreateNewBlock() helper methods
+
+    // ( votes of a block that was not added are mined again next time - votes whose voter has since voted are discarded then )
+    private void returnToPendingVotes(List<Vote> votes) {
+        for (Vote vote : votes) {
+            addPendingVote(vote);
+        }
+    }
+
+    // ( checks every vote signature across cores - failures[i] holds the reason votes[i] is invalid, or null )
+    private InvalidException[] verifyVotes(List<Vote> votes) {
+        InvalidException[] failures = new InvalidException[votes.size()];
+
+        IntStream.range(0, votes.size()).parallel().forEach(i -> {
+            try {
+                votes.get(i).isValid();
+            } catch (InvalidException e) {
+                failures[i] = e;
+            }
+        });
+
+        return failures;
+    }
+
     private void logDiscardedVotes(List<String> discardedVotes) {
         if (!discardedVotes.isEmpty()) {
             StringBuilder displayString = new StringBuilder("Block discarded votes from:\n");
@@ -178,79 +285,378 @@ public class Blockchain {
     }
 
     public void isValid() throws InvalidException {
-        // Verify Hash Chain
-        for (int i = 1; i < chain.size(); i++) {
-            String previousBlock_hash = chain.get(i - 1).getHash();
-            String currentBlock_previousHash = chain.get(i).getPreviousHash();
+        // Verify Hash Chain & Blocks ( in parallel over ranges of the chain )
+        List<Block> snapshot = getChain();
+        validator.validate(snapshot, 0, difficulty, difficultyVersion);
+
+        setValidatedHeight(snapshot);
+    }
+
+    /*
+    Validates against a checkpoint persisted by this node: the first 'checkpointHeight' blocks were fully validated before and
+    ended in 'checkpointHash'. Only the hash links are re-checked for those blocks, blocks after the checkpoint are fully validated.
+    A checkpoint that does not match the chain falls back to full validation.
+     */
+    public void isValid(int checkpointHeight, String checkpointHash) throws InvalidException {
+        if (checkpointHeight <= 0) {
+            isValid();
+            return;
+        }
+
+        List<Block> snapshot = getChain();
+        if (checkpointHeight > snapshot.size() || !snapshot.get(checkpointHeight - 1).getHash().equals(checkpointHash)) {
+            logger.warn("Checkpoint does not match chain, validating whole chain");
+            isValid();
+            return;
+        }
+
+        // Verify Hash Chain & Blocks ( after checkpoint )
+        validator.validate(snapshot, checkpointHeight, difficulty, difficultyVersion);
 
-            if (!currentBlock_previousHash.equals(previousBlock_hash)) {
-                throw new InvalidException("chain broken between block " + i + " and " + i+1);
+        setValidatedHeight(snapshot);
+    }
+
+    // ( blocks appended since the snapshot was taken were validated on arrival - a reorganised chain sets its own height )
+    private void setValidatedHeight(List<Block> validatedSnapshot) {
+        synchronized (chainLock) {
+            int height = validatedSnapshot.size();
+            // ( an empty snapshot validated nothing, so every block in the chain is still unvalidated )
+            if (height == 0) {
+                return;
+            }
+            if (chain.size() >= height && chain.get(height - 1) == validatedSnapshot.get(height - 1)) {
+                validatedHeight = chain.size();
             }
         }
+    }
 
-        // Verify Blocks
-        for (int i = 0; i < chain.size(); i++) {
-            Block block = chain.get(i);
+    // Checkpoint
+    public int getValidatedHeight() {
+        synchronized (chainLock) {
+            return validatedHeight;
+        }
+    }
+
+    // ( hash of the last fully validated block, or null if nothing has been validated )
+    public String getValidatedHash() {
+        synchronized (chainLock) {
+            if (validatedHeight == 0) {
+                return null;
+            }
+            return chain.get(validatedHeight - 1).getHash();
+        }
+    }
+
+    // ( blocks created or accepted by this node have already been validated - callers hold chainLock )
+    private void appendValidatedBlock(Block block) {
+        heightsByHash.put(block.getHash(), chain.size());
+        chain.add(block);
+        if (validatedHeight == chain.size() - 1) {
+            validatedHeight = chain.size();
+        }
+    }
+
+
+    // Delta Sync
+
+    // ( blocks from 'fromHeight' onwards, or null if the block below 'fromHeight' is not 'previousHash' )
+    public List<Block> getBlocksFrom(int fromHeight, String previousHash, int maxBlocks) {
+        synchronized (chainLock) {
+            int length = chain.size();
+            if (fromHeight < 1 || fromHeight > length || !chain.get(fromHeight - 1).getHash().equals(previousHash)) {
+                return null;
+            }
+
+            return getBlocks(fromHeight, maxBlocks);
+        }
+    }
+
+    // ( up to 'maxBlocks' blocks from 'fromHeight' onwards, empty if the chain is not that long )
+    public List<Block> getBlocks(int fromHeight, int maxBlocks) {
+        synchronized (chainLock) {
+            int length = chain.size();
+            if (fromHeight < 0 || fromHeight >= length) {
+                return new ArrayList<>();
+            }
+
+            int toHeight = Math.min(length, fromHeight + maxBlocks);
+            return new ArrayList<>(chain.subList(fromHeight, toHeight));
+        }
+    }
+
+    // ( appends blocks fetched from a peer in order, stopping at the first that does not extend the chain - returns how many were added )
+    public int handleSyncedBlocks(List<Block> blocks) {
+        int added = 0;
+        for (Block block : blocks) {
             try {
-                block.isValid(difficulty);
+                acceptBlock(block);
             } catch (InvalidException e) {
-                throw new InvalidException("Invalid block at index " + i + " with hash: "   + block.getHash(), e);
+                logger.warn("Synced block discarded: " + e.getMessage());
+                break;
             }
+            added++;
         }
+
+        logger.info("{} synced blocks added to blockchain", added);
+        return added;
     }
 
+    // Fork Choice
+
+    /*
+    Adopts a longer chain from a peer without replacing this blockchain object:
+        1. finds the last block both chains share ( the common ancestor )
+        2. validates the peer's blocks after it before changing anything
+        3. rolls back our blocks after it, restoring their voters to remaining voters
+        4. applies the peer's blocks, removing their voters from remaining voters
+        5. returns rolled back votes that are still valid and not in the new blocks to pending votes
+    Assumes the peer's chain uses the same difficulty rules as ours.
+     */
+    public void reorganise(List<Block> newChain, Set<String> peerRemainingVoters) throws InvalidException {
+        // Common ancestor
+        List<Block> snapshot = getChain();
+        int forkIndex = 0;
+        while (forkIndex < snapshot.size() && forkIndex < newChain.size() && snapshot.get(forkIndex).getHash().equals(newChain.get(forkIndex).getHash())) {
+            forkIndex++;
+        }
+
+        if (forkIndex == newChain.size()) {
+            throw new InvalidException("Chain contains no new blocks");
+        }
+
+        // Validate new suffix ( the shared prefix is already ours - done before taking the lock, as it is the slow part )
+        validator.validate(newChain, forkIndex, difficulty, difficultyVersion);
+
+        List<Block> rolledBack;
+        List<Block> applied = new ArrayList<>(newChain.subList(forkIndex, newChain.size()));
+        Set<String> appliedVoters = new HashSet<>();
+
+        // ( rollback and apply happen in one step, so readers never see a half built chain )
+        synchronized (chainLock) {
+            if (getLastBlock() != snapshot.get(snapshot.size() - 1)) {
+                throw new InvalidException("Chain changed during reorganisation");
+            }
+
+            rolledBack = new ArrayList<>(chain.subList(forkIndex, chain.size()));
+
+            // Roll back
+            for (Block block : rolledBack) {
+                for (Vote vote : block.getVotes()) {
+                    remainingVoters.add(vote.getVoter());
+                }
+                heightsByHash.remove(block.getHash());
+            }
+            chain.subList(forkIndex, chain.size()).clear();
+
+            // Apply
+            for (Block block : applied) {
+                for (Vote vote : block.getVotes()) {
+                    removeVoter(vote.getVoter());
+                    appliedVoters.add(vote.getVoter());
+                }
+                heightsByHash.put(block.getHash(), chain.size());
+                chain.add(block);
+            }
+            validatedHeight = chain.size();
+
+            // Voters registered on the peer but not yet here ( the peer has already removed every voter in its chain )
+            for (String voter : peerRemainingVoters) {
+                if (!appliedVoters.contains(voter)) {
+                    remainingVoters.add(voter);
+                }
+            }
+        }
+
+        // Return votes from rolled back blocks to pending votes
+        int restoredVotes = 0;
+        for (Block block : rolledBack) {
+            for (Vote vote : block.getVotes()) {
+                if (appliedVoters.contains(vote.getVoter())) {
+                    continue;
+                }
+
+                try {
+                    vote.isValid();
+                } catch (InvalidException e) {
+                    continue;
+                }
+
+                if (addPendingVote(vote)) {
+                    restoredVotes++;
+                }
+            }
+        }
+
+        logger.info("Blockchain reorganised at height {}: {} blocks rolled back, {} blocks applied, {} votes returned to pending votes", forkIndex, rolledBack.size(), applied.size(), restoredVotes);
+
+        connectOrphans();
+    }
 
     // Pending Votes
     public Queue<Vote> getPendingVotes() {
         return pendingVotes;
     }
 
+    // ( vote id -> vote - see Vote.getId() )
+    public Map<String, Vote> getPendingVotesById() {
+        return Collections.unmodifiableMap(pendingVotesById);
+    }
+
+    // ( false if the vote is already pending - the id is claimed first, so only one of two copies arriving together is queued )
+    private boolean addPendingVote(Vote vote) {
+        if (pendingVotesById.putIfAbsent(voteId(vote), vote) != null) {
+            return false;
+        }
+        pendingVotes.add(vote);
+        return true;
+    }
+
+    private static String voteId(Vote vote) {
+        try {
+            return vote.getId();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unable to hash vote", e);
+        }
+    }
+
     // Receiving
     public void handleNewVote(Vote newVote) {
         logger.info("New vote received");
+
+        // ( the same vote can arrive by gossip and by anti-entropy )
+        if (!addPendingVote(newVote)) {
+            logger.info("New vote already in pending votes");
+            return;
+        }
         logger.info("New vote added to pending votes");
-        pendingVotes.add(newVote);
     }
 
     public void handleNewVoter(String voter) {
         logger.info("New voter received");
         logger.info("New voter added to remaining voters");
-        remainingVoters.add(voter);
+        synchronized (chainLock) {
+            remainingVoters.add(voter);
+        }
     }
 
     public void handleNewBlock(Block newBlock) {
         logger.info("New block received");
 
-        // Checks that the block is valid ( correct hash and proof of work )
+        // Arrived before its parent - held until the parent is added
+        if (!newBlock.getPreviousHash().equals(getLastBlock().getHash())) {
+            handleOrphanBlock(newBlock);
+            return;
+        }
+
         try {
-            newBlock.isValid(difficulty);
+            acceptBlock(newBlock);
         } catch (InvalidException e) {
             logger.info("New block discarded: " + e.getMessage());
             return;
         }
 
-        // Checks that the block will not make the chain invalid on adding
-        if (!(newBlock.getPreviousHash().equals(getLastBlock().getHash()))) {
-            logger.info("New block discarded: block.previousHash does not match chain");
+        logger.info("New block accepted");
+        distributeNewBlock(newBlock);
+
+        connectOrphans();
+    }
+
+    /*
+    Only blocks that could extend the chain later are held - checked before the proof of work, as they are just lookups:
+        - a block already in the chain ( a duplicate arriving late ) is dropped
+        - a block whose parent is in the chain below the tip forks from it, so no block added to the chain can be its parent -
+          it is dropped, and a longer fork is adopted by sync ( see reorganise ) instead
+     */
+    private void handleOrphanBlock(Block orphan) {
+        Integer blockHeight;
+        Integer parentHeight;
+        int length;
+        synchronized (chainLock) {
+            blockHeight = heightsByHash.get(orphan.getHash());
+            parentHeight = heightsByHash.get(orphan.getPreviousHash());
+            length = chain.size();
+        }
+
+        if (blockHeight != null) {
+            logger.info("New block discarded: block already in chain");
             return;
         }
 
-        // Checks that voters have not already voted and prevents them from voters again in the future
-        for (Vote vote: newBlock.getVotes()) {
-            removeVoter(vote.getVoter());
+        if (parentHeight != null) {
+            if (parentHeight == length - 1) {
+                // ( the parent became the tip since handleNewBlock checked )
+                handleNewBlock(orphan);
+            } else {
+                logger.info("New block discarded: parent is at height {}, below the tip", parentHeight);
+            }
+            return;
         }
-        /*
-        Here you could think that we should check each vote in the block against remaining voters so that we don't allow a voter to double vote.
-        However, we already know that:
-            1. the block has a valid hash
-            2. the blocks previous hash matched our latest blocks hash
-            Because each hash in a blockchain is dependent on the previous hash, there is no need to check against remaining voters since the blockchain that this block came from must be identical to this blockchain to provide a valid previous hash
 
-        However, although we do not need to check that these voter have not already voted, we do need to remove them from remaining voters in order to prevent future double voting
-         */
-        logger.info("New block accepted");
-        chain.add(newBlock);
-        distributeNewBlock(newBlock);
+        // ( only blocks with a valid proof of work are held, so the pool cannot be filled for free )
+        try {
+            orphan.isValid(difficulty, difficultyVersion);
+        } catch (InvalidException e) {
+            logger.info("New block discarded: " + e.getMessage());
+            return;
+        }
+
+        if (orphanPool.add(orphan)) {
+            logger.info("New block held as orphan ( {} orphans )", orphanPool.getSize());
+        }
+    }
+
+    // ( adds orphans that extend the chain tip, repeating for their own children )
+    private void connectOrphans() {
+        List<Block> children = orphanPool.takeChildren(getLastBlock().getHash());
+        while (!children.isEmpty()) {
+            Block connected = null;
+            for (Block child : children) {
+                try {
+                    acceptBlock(child);
+                } catch (InvalidException e) {
+                    logger.info("Orphan block discarded: " + e.getMessage());
+                    continue;
+                }
+                connected = child;
+                break; // ( remaining siblings no longer extend the tip )
+            }
+
+            if (connected == null) {
+                return;
+            }
+
+            logger.info("Orphan block connected");
+            distributeNewBlock(connected);
+            children = orphanPool.takeChildren(connected.getHash());
+        }
+    }
+
+    // ( validates a block against the tip of the chain and appends it - shared by gossiped and synced blocks )
+    private void acceptBlock(Block newBlock) throws InvalidException {
+        // Checks that the block is valid ( correct hash and proof of work )
+        newBlock.isValid(difficulty, difficultyVersion);
+
+        synchronized (chainLock) {
+            // Checks that the block will not make the chain invalid on adding
+            if (!(newBlock.getPreviousHash().equals(getLastBlock().getHash()))) {
+                throw new InvalidException("block.previousHash does not match chain");
+            }
+
+            // Checks that voters have not already voted and prevents them from voters again in the future
+            for (Vote vote: newBlock.getVotes()) {
+                removeVoter(vote.getVoter());
+            }
+            /*
+            Here you could think that we should check each vote in the block against remaining voters so that we don't allow a voter to double vote.
+            However, we already know that:
+                1. the block has a valid hash
+                2. the blocks previous hash matched our latest blocks hash
+                Because each hash in a blockchain is dependent on the previous hash, there is no need to check against remaining voters since the blockchain that this block came from must be identical to this blockchain to provide a valid previous hash
+
+            However, although we do not need to check that these voter have not already voted, we do need to remove them from remaining voters in order to prevent future double voting
+             */
+            appendValidatedBlock(newBlock);
+        }
     }
 
     // Sending
@@ -259,10 +665,15 @@ public class Blockchain {
     }
 
     // Remaining Voters
+
+    // ( snapshot )
     public Set<String> getRemainingVoters() {
-        return remainingVoters;
+        synchronized (chainLock) {
+            return new HashSet<>(remainingVoters);
+        }
     }
 
+    // ( callers hold chainLock )
     private boolean removeVoter(String voter) {
         return remainingVoters.remove(voter);
     }
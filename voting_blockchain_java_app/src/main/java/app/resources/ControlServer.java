@@ -58,6 +58,8 @@ public class ControlServer {
         server.createContext("/blockchain", new blockchainHandler());
         server.createContext("/network-peers", new networkPeersHandler());
         server.createContext("/connect", new connectHandler());
+        server.createContext("/metrics", new metricsHandler());
+        server.createContext("/sync", new syncHandler());
 
 
         //server.createContext("/persist", new persistHandler()); // overrides auto-persist
@@ -194,6 +196,48 @@ public class ControlServer {
         }
     }
 
+    // Get Metrics
+    public class metricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            JSONObject metrics = localNode.getMetricsJSON();
+
+            byte[] responseBytes = metrics.toString().getBytes();
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, responseBytes.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(responseBytes);
+            }
+        }
+    }
+
+    // Get Sync Progress
+    public class syncHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            JSONObject syncProgress = localNode.getSyncProgressJSON();
+
+            byte[] responseBytes = syncProgress.toString().getBytes();
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, responseBytes.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(responseBytes);
+            }
+        }
+    }
+
     public class connectHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
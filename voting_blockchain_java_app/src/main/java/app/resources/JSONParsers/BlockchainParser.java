@@ -7,6 +7,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import app.resources.Blockchain;
+import app.resources.blockchain.ProofOfWork;
 import app.resources.blockchain.resources.Block;
 import app.resources.blockchain.resources.Vote;
 import app.resources.exceptions.MalformedJSONException;
@@ -147,6 +148,7 @@ public class BlockchainParser {
         }
 
         int difficulty;
+        int difficultyVersion;
         List<Block> chain;
         Set<String> remainingVoters;
         Queue<Vote> pendingVotes;
@@ -154,18 +156,33 @@ public class BlockchainParser {
         try {
             difficulty = data.getInt("difficulty");
 
+            // Chains persisted before difficulty was versioned use the Base64 prefix check
+            difficultyVersion = data.optInt("difficultyVersion", ProofOfWork.BASE64_PREFIX);
+        } catch (JSONException e) {
+            throw new MalformedJSONException("A required field is malformed", e);
+        }
+
+        if (!ProofOfWork.isSupported(difficultyVersion)) {
+            throw new MalformedJSONException("Unsupported difficultyVersion " + difficultyVersion);
+        }
+
+        // ( checked before the chain is built, as proof of work checks index the digest by difficulty )
+        if (!ProofOfWork.isValidDifficulty(difficulty, difficultyVersion)) {
+            throw new MalformedJSONException("difficulty " + difficulty + " out of range 0-" + ProofOfWork.maxDifficulty(difficultyVersion) + " for difficultyVersion " + difficultyVersion);
+        }
+
+        try {
             chain = JSONToChain(data.getJSONArray("chain"));
 
             remainingVoters = JSONToRemainingVoters(data.getJSONArray("remainingVoters"));
 
             pendingVotes = JSONToPendingVotes(data.getJSONArray("pendingVotes"));
 
-        } catch (MalformedJSONException e) {
+        } catch (MalformedJSONException | JSONException e) {
             throw new MalformedJSONException("A required field is malformed", e);
         }
 
-
-        return new Blockchain(localNode, difficulty, chain, remainingVoters, pendingVotes);
+        return new Blockchain(localNode, difficulty, difficultyVersion, chain, remainingVoters, pendingVotes);
     }
 
     public static JSONObject BlockchainToJSON(Blockchain blockchain) {
@@ -181,6 +198,49 @@ public class BlockchainParser {
         jsonObject.put("pendingVotes", JSONPendingVotes);
 
         jsonObject.put("difficulty", blockchain.getDifficulty());
+        jsonObject.put("difficultyVersion", blockchain.getDifficultyVersion());
+
+        return jsonObject;
+    }
+
+    // Head ( height and tip hash, exchanged before syncing so in-sync nodes transfer no blocks )
+    public static JSONObject blockchainHeadToJSON(Blockchain blockchain) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("height", blockchain.getLength());
+        jsonObject.put("tip_hash", blockchain.getLastBlock().getHash());
+        jsonObject.put("difficulty", blockchain.getDifficulty());
+        jsonObject.put("difficultyVersion", blockchain.getDifficultyVersion());
+
+        return jsonObject;
+    }
+
+    // Headers ( hash links only - a block's hash covers its votes, so bodies are checked against these when they arrive )
+    public static JSONObject blockHeaderToJSON(Block block) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("hash", block.getHash());
+        jsonObject.put("previousHash", block.getPreviousHash());
+
+        return jsonObject;
+    }
+
+    public static JSONArray headerChainToJSON(List<Block> blocks) {
+        JSONArray JSONHeaders = new JSONArray();
+        for (Block block : blocks) {
+            JSONHeaders.put(blockHeaderToJSON(block));
+        }
+        return JSONHeaders;
+    }
+
+    // Checkpoint ( only written to this node's own persistent file, never trusted from peers )
+    public static JSONObject checkpointToJSON(Blockchain blockchain) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("height", blockchain.getValidatedHeight());
+        if (blockchain.getValidatedHash() != null) {
+            jsonObject.put("tipHash", blockchain.getValidatedHash());
+        }
 
         return jsonObject;
     }
@@ -0,0 +1,185 @@
+package app.resources.JSONParsers;
+
+import app.resources.blockchain.Miner;
+import app.resources.blockchain.OrphanPool;
+import app.resources.network.GossipEngine;
+import app.resources.network.HeaderSync;
+import app.resources.network.MessageCache;
+import app.resources.network.MessageReceiver;
+import app.resources.network.MessageValidator;
+import app.resources.network.PeerHealth;
+import app.resources.network.PeerInventory;
+import app.resources.network.resources.PeerStats;
+import app.resources.util.BoundedCache;
+import app.resources.util.EventExecutor;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+public class MetricsParser {
+    // Miner
+    public static JSONObject minerToJSON(Miner miner) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("workers", miner.getWorkers());
+        jsonObject.put("total_hashes", miner.getTotalHashes());
+        jsonObject.put("pool_hash_rate", miner.getPoolHashRate());
+
+        JSONArray JSONWorkerRates = new JSONArray();
+        for (double rate : miner.getWorkerHashRates()) {
+            JSONWorkerRates.put(rate);
+        }
+        jsonObject.put("worker_hash_rates", JSONWorkerRates);
+
+        return jsonObject;
+    }
+
+    // Caches
+    public static JSONObject boundedCacheToJSON(BoundedCache<?, ?> cache) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("size", cache.getSize());
+        jsonObject.put("max_size", cache.getMaxSize());
+        jsonObject.put("hits", cache.getHits());
+        jsonObject.put("misses", cache.getMisses());
+        jsonObject.put("evictions", cache.getEvictions());
+
+        return jsonObject;
+    }
+
+    public static JSONObject messageCacheToJSON(MessageCache messageCache) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("size", messageCache.getSize());
+        jsonObject.put("max_size", messageCache.getMaxLength());
+        jsonObject.put("ttl_ms", messageCache.getTtl());
+        jsonObject.put("hits", messageCache.getHits());
+        jsonObject.put("misses", messageCache.getMisses());
+        jsonObject.put("evictions", messageCache.getEvictions());
+        jsonObject.put("expirations", messageCache.getExpirations());
+
+        return jsonObject;
+    }
+
+    // Orphan Pool
+    public static JSONObject orphanPoolToJSON(OrphanPool orphanPool) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("size", orphanPool.getSize());
+        jsonObject.put("max_size", orphanPool.getMaxSize());
+        jsonObject.put("added", orphanPool.getAdded());
+        jsonObject.put("connected", orphanPool.getConnected());
+        jsonObject.put("evicted", orphanPool.getEvicted());
+        jsonObject.put("average_connect_latency_ms", orphanPool.getAverageConnectLatency());
+        jsonObject.put("last_connect_latency_ms", orphanPool.getLastConnectLatency());
+
+        return jsonObject;
+    }
+
+    // Message Receiver
+    public static JSONObject messageReceiverToJSON(MessageReceiver messageReceiver) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("workers", messageReceiver.getWorkers());
+        jsonObject.put("active_workers", messageReceiver.getActiveWorkers());
+        jsonObject.put("queued_messages", messageReceiver.getQueuedMessages());
+        jsonObject.put("paused_connections", messageReceiver.getPausedConnections());
+
+        return jsonObject;
+    }
+
+    // Event Executor
+    public static JSONObject eventExecutorToJSON(EventExecutor eventExecutor) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("mode", eventExecutor.getMode());
+        jsonObject.put("active_tasks", eventExecutor.getActiveTasks());
+        jsonObject.put("queued_tasks", eventExecutor.getQueuedTasks());
+        jsonObject.put("completed_tasks", eventExecutor.getCompletedTasks());
+        jsonObject.put("failed_tasks", eventExecutor.getFailedTasks());
+
+        return jsonObject;
+    }
+
+    // Header Sync
+    public static JSONObject headerSyncToJSON(HeaderSync headerSync) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("state", headerSync.getState());
+        jsonObject.put("start_height", headerSync.getStartHeight());
+        jsonObject.put("target_height", headerSync.getTargetHeight());
+        jsonObject.put("headers_fetched", headerSync.getHeadersFetched());
+        jsonObject.put("blocks_fetched", headerSync.getBlocksFetched());
+        jsonObject.put("blocks_applied", headerSync.getBlocksApplied());
+        jsonObject.put("blocks_per_second", headerSync.getBlocksPerSecond());
+
+        return jsonObject;
+    }
+
+    // Gossip
+    public static JSONObject gossipEngineToJSON(GossipEngine gossipEngine) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("fan_out", gossipEngine.getFanOut());
+        jsonObject.put("base_fan_out", gossipEngine.getBaseFanOut());
+        jsonObject.put("max_fan_out", gossipEngine.getMaxFanOut());
+        jsonObject.put("delivery_rate", gossipEngine.getDeliveryRate());
+        jsonObject.put("anti_entropy_rounds", gossipEngine.getRounds());
+        jsonObject.put("votes_fetched", gossipEngine.getVotesFetched());
+        jsonObject.put("votes_served", gossipEngine.getVotesServed());
+
+        return jsonObject;
+    }
+
+    // Message Validation
+    public static JSONObject messageValidatorToJSON(MessageValidator messageValidator) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("accepted", messageValidator.getAccepted());
+
+        // ( rejections by stage, in the order the stages run )
+        JSONObject JSONRejections = new JSONObject();
+        JSONRejections.put("format", messageValidator.getFormatRejections());
+        JSONRejections.put("type", messageValidator.getTypeRejections());
+        JSONRejections.put("duplicate", messageValidator.getDuplicateRejections());
+        JSONRejections.put("unknown_peer", messageValidator.getUnknownPeerRejections());
+        JSONRejections.put("signature", messageValidator.getSignatureRejections());
+        jsonObject.put("rejections", JSONRejections);
+
+        return jsonObject;
+    }
+
+    // Inventory
+    public static JSONObject peerInventoryToJSON(PeerInventory peerInventory) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("tracked_peers", peerInventory.getTrackedPeers());
+        jsonObject.put("announced", peerInventory.getAnnounced());
+        jsonObject.put("requested", peerInventory.getRequested());
+        jsonObject.put("skipped", peerInventory.getSkipped());
+
+        return jsonObject;
+    }
+
+    // Peer Health
+    public static JSONArray peerHealthToJSON(PeerHealth peerHealth) {
+        JSONArray JSONPeerStats = new JSONArray();
+
+        for (PeerStats peerStats : peerHealth.getKnownPeerStats()) {
+            JSONObject jsonObject = new JSONObject();
+
+            jsonObject.put("address", peerStats.getAddress());
+            jsonObject.put("average_rtt", peerStats.getAverageRtt());
+            jsonObject.put("successes", peerStats.getSuccesses());
+            jsonObject.put("failures", peerStats.getFailures());
+            jsonObject.put("consecutive_failures", peerStats.getConsecutiveFailures());
+            jsonObject.put("error_rate", peerStats.getErrorRate());
+            jsonObject.put("last_seen", peerStats.getLastSeen());
+            jsonObject.put("benched", peerStats.isBenched());
+
+            JSONPeerStats.put(jsonObject);
+        }
+
+        return JSONPeerStats;
+    }
+}
@@ -11,9 +11,11 @@ import app.resources.NetworkManager;
 import app.resources.exceptions.MalformedJSONException;
 import app.resources.network.KnownPeers;
 import app.resources.network.resources.RemotePeer;
+import app.resources.util.BloomFilter;
 
 import java.security.InvalidAlgorithmParameterException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Queue;
@@ -186,6 +188,32 @@ public class NetworkParser {
         return jsonObject;
     }
 
+    // Bloom Filter
+    public static BloomFilter JSONToBloomFilter(JSONObject data) throws MalformedJSONException {
+        if (!data.has("bits")){
+            throw new MalformedJSONException("Required field 'bits' missing");
+        }
+
+        if (!data.has("hash_functions")){
+            throw new MalformedJSONException("Required field 'hash_functions' missing");
+        }
+
+        try {
+            return new BloomFilter(Base64.getDecoder().decode(data.getString("bits")), data.getInt("hash_functions"));
+        } catch (JSONException | IllegalArgumentException e) {
+            throw new MalformedJSONException("Bloom filter is malformed", e);
+        }
+    }
+
+    public static JSONObject bloomFilterToJSON(BloomFilter bloomFilter) {
+        JSONObject jsonObject = new JSONObject();
+
+        jsonObject.put("bits", Base64.getEncoder().encodeToString(bloomFilter.getBits()));
+        jsonObject.put("hash_functions", bloomFilter.getNumHashes());
+
+        return jsonObject;
+    }
+
     // Public Keys & Private Keys do not need to be converted
 
     // Does not load or store port and host - this gets passed in from the localNode object
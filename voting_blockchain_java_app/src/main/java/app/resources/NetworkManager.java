@@ -12,19 +12,30 @@ import app.resources.network.MessageSender;
 
 import app.LocalNode;
 
+import app.resources.util.Batcher;
 import app.resources.util.Cryptography;
 
 import app.resources.blockchain.resources.*;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.security.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class NetworkManager {
+    private static final int MAX_BLOCKS_PER_RESPONSE = 256; // Blocks sent per request_blocks_from response
+    private static final int MAX_HEADERS_PER_RESPONSE = 2048; // Headers sent per request_header_chain response
+    private static final int HEADER_SYNC_THRESHOLD = 256; // Blocks behind a peer before syncing header-first
+    private static final int MAX_DELTA_SYNC_PEERS = 3; // Peers a delta sync is tried with before giving up until the next round
+    private static final int INV_THRESHOLD = 1024; // Data length ( chars ) from which send messages are announced by inv first
+    private static final int MAX_INV_HASHES = 1024; // Hashes accepted per inv
+
     private final Logger logger;
 
     private final LocalNode localNode;
@@ -39,9 +50,18 @@ public class NetworkManager {
     private final MessageCache messageCache;
 
     private final MessageReceiver messageReceiver;
+    private final MessageSender messageSender; // Pooled connections to peers
+    private final HeaderSync headerSync;
+    private final PeerHealth peerHealth; // Round trip times and failures of known peers, used to choose who to send to
+    private final GossipEngine gossipEngine; // Fan-out and vote anti-entropy
+    private final PeerInventory peerInventory = new PeerInventory(); // Message hashes each peer already has
+    private final Batcher<RemotePeer, JSONObject> invBatcher = new Batcher<>("InvBatcher", this::announceMessages); // Outgoing invs, one per peer per batch
+    private final MessageValidator messageValidator; // Staged checks on received messages
+    private final Batcher<String, Vote> voteBatcher = new Batcher<>("VoteBatcher", (messageType, votes) -> formulateOutgoingVotes(votes)); // Outgoing votes, sent as send_votes batches
 
     public NetworkManager(String host, int port, LocalNode localNode, KnownPeers knownPeers, MessageCache messageCache) throws NoSuchAlgorithmException {
         this.messageReceiver = new MessageReceiver(port, this);
+        this.messageSender = new MessageSender();
 
         this.logger = LoggerFactory.getLogger(NetworkManager.class);
 
@@ -52,6 +72,10 @@ public class NetworkManager {
 
         this.knownPeers = knownPeers;
         this.messageCache = messageCache;
+        this.messageValidator = new MessageValidator(knownPeers, messageCache);
+        this.headerSync = new HeaderSync(this, localNode);
+        this.peerHealth = new PeerHealth(knownPeers);
+        this.gossipEngine = new GossipEngine(this, localNode);
 
         KeyPair keypair = Cryptography.generateKeyPair();
         this.publicKey = Cryptography.publicKeyToString(keypair.getPublic());
@@ -60,6 +84,7 @@ public class NetworkManager {
 
     public NetworkManager(String host, int port, LocalNode localNode, KnownPeers knownPeers, MessageCache messageCache, String publicKey, String privateKey) throws InvalidException {
         this.messageReceiver = new MessageReceiver(port, this);
+        this.messageSender = new MessageSender();
         this.logger = LoggerFactory.getLogger(NetworkManager.class);
 
         this.localNode = localNode;
@@ -69,6 +94,10 @@ public class NetworkManager {
 
         this.knownPeers = knownPeers;
         this.messageCache = messageCache;
+        this.messageValidator = new MessageValidator(knownPeers, messageCache);
+        this.headerSync = new HeaderSync(this, localNode);
+        this.peerHealth = new PeerHealth(knownPeers);
+        this.gossipEngine = new GossipEngine(this, localNode);
 
         // Ensures valid public and private key has been passed in
         Cryptography.stringToPublicKey(publicKey); // Throws InvalidException
@@ -91,10 +120,34 @@ public class NetworkManager {
         return knownPeers;
     }
 
+    public PeerHealth getPeerHealth() {
+        return peerHealth;
+    }
+
+    public GossipEngine getGossipEngine() {
+        return gossipEngine;
+    }
+
+    public PeerInventory getPeerInventory() {
+        return peerInventory;
+    }
+
+    public MessageValidator getMessageValidator() {
+        return messageValidator;
+    }
+
     public MessageCache getMessageCache() {
         return messageCache;
     }
 
+    public MessageReceiver getMessageReceiver() {
+        return messageReceiver;
+    }
+
+    public HeaderSync getHeaderSync() {
+        return headerSync;
+    }
+
 
     /* <---------Begin---Listening---For---Messages---------> */
     public void start() {
@@ -104,46 +157,128 @@ public class NetworkManager {
 
     /* <---------Message---Cycle---For---Send---------> */
 
-    // ( distributes send messages to 3 random known peers )
+    /*
+    Distributes send messages to known peers chosen by score ( how many is decided by GossipEngine ), skipping peers known to have
+    the message already. Large messages are first announced by hash in a batched, unsigned inv ( see Batcher ) and only sent to
+    peers that ask for them - small ones cost less to send than to announce, so they are sent directly.
+     */
     public void distributeSendMessage(JSONObject message){
         logger.info("Distributing message of type {}", message.getString("message_type"));
-        for (RemotePeer peer : knownPeers.getRandomPeers(3)) {
-            String foreignHost = peer.getHost();
-            int foreignPort = peer.getPort();
+        String hash = message.getString("hash");
 
-            new Thread(() -> {
-                JSONObject response;
-                try {
-                    logger.debug("Attempting to send message to {}:{}", foreignHost, foreignPort);
-                    response = MessageSender.send(foreignHost, foreignPort, message);
-                } catch (Exception e) {
-                    logger.warn("Unable to send message to {}:{} - {}",  foreignHost, foreignPort, e.getMessage(), e);
-                    return;
+        List<RemotePeer> peers = peerHealth.selectPeers(gossipEngine.getFanOut(), peer -> !peerInventory.isKnown(peer, hash));
+        if (peers.isEmpty()) {
+            return;
+        }
+
+        boolean announced = message.getJSONObject("data").toString().length() >= INV_THRESHOLD;
+        for (RemotePeer peer : peers) {
+            if (announced && peerInventory.supportsInv(peer)) {
+                invBatcher.add(peer, message);
+            } else {
+                localNode.getEventExecutor().submit(() -> deliverMessage(peer, message));
+            }
+        }
+    }
+
+    // ( occurs on invBatcher flush - one inv for the batch, then the messages the peer asked for )
+    private void announceMessages(RemotePeer peer, List<JSONObject> messages) {
+        localNode.getEventExecutor().submit(() -> {
+            JSONArray hashes = new JSONArray();
+            for (JSONObject message : messages) {
+                hashes.put(message.getString("hash"));
+            }
+
+            // ( not signed - an inv changes nothing on the peer, it only asks which hashes it has seen )
+            JSONObject inv = new JSONObject();
+            inv.put("sender", formulatePeerID());
+            inv.put("message_type", "inv");
+            inv.put("data", new JSONObject().put("hashes", hashes));
+
+            Set<String> getdata = new HashSet<>();
+            try {
+                JSONObject response = sendMessage(peer, inv);
+                peerInventory.recordAnnounced();
+
+                if (response.getBoolean("accepted")) {
+                    for (Object wanted : response.getJSONObject("data").getJSONArray("getdata")) {
+                        getdata.add((String) wanted);
+                    }
+                } else {
+                    // ( peers that do not know inv are sent messages directly from now on )
+                    peerInventory.markInvUnsupported(peer);
+                    hashes.forEach(hash -> getdata.add((String) hash));
                 }
+            } catch (Exception e) {
+                messages.forEach(message -> gossipEngine.recordDelivery(false));
+                logger.warn("Unable to send inv to {} - {}", peer.getAddress(), e.getMessage());
+                return;
+            }
 
-                if(response.getBoolean("accepted")) {
-                    logger.info("{} accepted by {}:{}", response.getString("message_type"), foreignHost, foreignPort);
+            for (JSONObject message : messages) {
+                String hash = message.getString("hash");
+                if (getdata.contains(hash)) {
+                    peerInventory.recordRequested();
+                    deliverMessage(peer, message);
                 } else {
-                    logger.error("Error sending {} to {}:{} - {}", message.getString("message_type"), foreignHost, foreignPort, response.getJSONObject("data").getString("reason"));
+                    logger.debug("{} already has message {}", peer.getAddress(), hash);
+                    peerInventory.markKnown(peer, hash);
+                    peerInventory.recordSkipped();
+                    gossipEngine.recordDelivery(true);
                 }
+            }
+        });
+    }
+
+    // Helper for distributeSendMessage(), announceMessages()
+    private void deliverMessage(RemotePeer peer, JSONObject message) {
+        String foreignHost = peer.getHost();
+        int foreignPort = peer.getPort();
 
-            }, "SendThread-" + foreignHost + ":" + foreignPort).start();
+        JSONObject response;
+        try {
+            logger.debug("Attempting to send message to {}:{}", foreignHost, foreignPort);
+            response = sendMessage(peer, message);
+            peerInventory.markKnown(peer, message.getString("hash"));
+            gossipEngine.recordDelivery(true);
+        } catch (Exception e) {
+            gossipEngine.recordDelivery(false);
+            logger.warn("Unable to send message to {}:{} - {}",  foreignHost, foreignPort, e.getMessage(), e);
+            return;
+        }
+
+        if(response.getBoolean("accepted")) {
+            logger.info("{} accepted by {}:{}", response.getString("message_type"), foreignHost, foreignPort);
+        } else {
+            logger.error("Error sending {} to {}:{} - {}", message.getString("message_type"), foreignHost, foreignPort, response.getJSONObject("data").getString("reason"));
         }
     }
 
-    // ( occurs on WebServer vote submission )
+    // ( occurs on WebServer vote submission - votes are sent in batches, see Batcher )
     public void formulateOutgoingVote(Vote vote) {
+        logger.info("outgoing vote added to batch");
+        voteBatcher.add("send_votes", vote);
+    }
+
+    // ( occurs on voteBatcher flush - one signed message for the whole batch )
+    public void formulateOutgoingVotes(List<Vote> votes) {
         try {
             // Create Message
-            logger.info("formulating outgoing vote");
+            logger.info("formulating outgoing batch of {} votes", votes.size());
+
+            JSONArray JSONVotes = new JSONArray();
+            for (Vote vote : votes) {
+                JSONVotes.put(BlockchainParser.VoteToJSON(vote));
+            }
 
-            JSONObject data = BlockchainParser.VoteToJSON(vote);
-            JSONObject message = formulateOutgoingMessage(data, "send_vote");
+            JSONObject data = new JSONObject();
+            data.put("votes", JSONVotes);
+            JSONObject message = formulateOutgoingMessage(data, "send_votes");
 
             distributeSendMessage(message);
 
         } catch (Exception e) {
-            logger.error("Failed to distribute vote", e);
+            logger.error("Failed to distribute votes", e);
         }
     }
 
@@ -179,26 +314,38 @@ public class NetworkManager {
 
     /* <---------Message---Cycle---For---Request---------> */
 
-    // ( occurs intermittedly ( every minute ) )
+    // ( occurs intermittedly ( every minute ) - compares heads and fetches only the missing blocks )
     public void formulateOutgoingBlockchainRequest() {
-        for(RemotePeer peer : knownPeers.getRandomPeers(1)) {
+        for(RemotePeer peer : peerHealth.selectPeers(1)) {
             String foreignHost = peer.getHost();
             int foreignPort  = peer.getPort();
 
             try {
-                JSONObject data = new JSONObject(); // No data
-                JSONObject message = formulateOutgoingMessage(data, "request_blockchain");
-                JSONObject response = MessageSender.send(foreignHost, foreignPort, message);
+                JSONObject localHead = localNode.getBlockchainHeadJSON();
+                JSONObject peerHead = sendRequest(peer, "request_headers", new JSONObject());
 
-                if (response.getBoolean("accepted")) {
-                    JSONObject JSONBlockchain = response.getJSONObject("data");
-                    Blockchain newBlockchain = BlockchainParser.JSONToBlockchain(JSONBlockchain, localNode);
-                    localNode.handleNetworkBlockchain(newBlockchain);
-                    logger.info("{} accepted by {}:{}", message.getString("message_type"), foreignHost, foreignPort);
-                } else {
-                    logger.warn("{} rejected by {}:{} - {}", message.getString("message_type"), foreignHost, foreignPort, response.getJSONObject("data").getString("reason"));
+                if (peerHead.getInt("height") <= localHead.getInt("height")) {
+                    logger.info("Blockchain in sync with {}:{}", foreignHost, foreignPort);
+                    continue;
                 }
 
+                if (peerHead.getInt("difficulty") != localHead.getInt("difficulty") || peerHead.getInt("difficultyVersion") != localHead.getInt("difficultyVersion")) {
+                    logger.info("Difficulty differs from {}:{}, requesting full blockchain", foreignHost, foreignPort);
+                    formulateOutgoingFullBlockchainRequest(peer);
+                    continue;
+                }
+
+                // ( far behind - fetch headers first, then bodies from several peers in parallel )
+                if (peerHead.getInt("height") - localHead.getInt("height") > HEADER_SYNC_THRESHOLD) {
+                    if (!headerSync.sync(peer, peerHead.getInt("height"))) {
+                        logger.info("Header chain from {}:{} does not extend ours, requesting full blockchain", foreignHost, foreignPort);
+                        formulateOutgoingFullBlockchainRequest(peer);
+                    }
+                    continue;
+                }
+
+                syncBlocks(peer, peerHead.getInt("height"));
+
             } catch (Exception e) {
                 logger.error("Failed to complete blockchain request", e);
             }
@@ -206,17 +353,87 @@ public class NetworkManager {
 
     }
 
+    /*
+    Helper for formulateOutgoingBlockchainRequest(). The full blockchain is only requested when the peer has no block at our tip
+    ( the chains diverged below it ) - any other failure ( timeout, dropped connection, a busy peer ) is transient, so the delta
+    sync is retried with another peer instead of transferring a whole chain.
+     */
+    private void syncBlocks(RemotePeer peer, int peerHeight) {
+        Set<RemotePeer> tried = new HashSet<>();
+        RemotePeer current = peer;
+
+        while (current != null && tried.size() < MAX_DELTA_SYNC_PEERS) {
+            tried.add(current);
+            try {
+                if (!syncBlocksFrom(current, peerHeight)) {
+                    logger.info("Chains diverged below our tip with {}:{}, requesting full blockchain", current.getHost(), current.getPort());
+                    formulateOutgoingFullBlockchainRequest(current);
+                }
+                return;
+            } catch (Exception e) {
+                logger.info("Delta sync with {}:{} failed ( {} ), retrying with another peer", current.getHost(), current.getPort(), e.getMessage());
+            }
+
+            List<RemotePeer> others = peerHealth.selectPeers(1, other -> !tried.contains(other));
+            current = others.isEmpty() ? null : others.get(0);
+        }
+    }
+
+    // ( requests blocks above our tip until caught up with the peer - false if the peer has no block at our tip )
+    private boolean syncBlocksFrom(RemotePeer peer, int peerHeight) throws Exception {
+        JSONObject localHead = localNode.getBlockchainHeadJSON();
+
+        while (localHead.getInt("height") < peerHeight) {
+            JSONObject data = new JSONObject();
+            data.put("from_height", localHead.getInt("height"));
+            data.put("previous_hash", localHead.getString("tip_hash"));
+            data.put("timestamp", System.currentTimeMillis());
+
+            // ( not sendRequest - a rejection is inspected here rather than thrown )
+            JSONObject response = sendMessage(peer, formulateOutgoingMessage(data, "request_blocks_from"));
+            if (!response.getBoolean("accepted")) {
+                JSONObject responseData = response.getJSONObject("data");
+                if (responseData.optBoolean("diverged", false)) {
+                    return false;
+                }
+                throw new InvalidException("request_blocks_from rejected - " + responseData.optString("reason"));
+            }
+
+            List<Block> blocks = BlockchainParser.JSONToChain(response.getJSONObject("data").getJSONArray("blocks"));
+            if (blocks.isEmpty() || localNode.handleNetworkBlocks(blocks) < blocks.size()) {
+                return true;
+            }
+
+            localHead = localNode.getBlockchainHeadJSON();
+        }
+
+        logger.info("Blockchain synced with {}:{} at height {}", peer.getHost(), peer.getPort(), localHead.getInt("height"));
+        return true;
+    }
+
+    // ( fallback when the chains have diverged - transfers the peer's whole blockchain )
+    private void formulateOutgoingFullBlockchainRequest(RemotePeer peer) {
+        try {
+            JSONObject JSONBlockchain = sendRequest(peer, "request_blockchain", new JSONObject());
+            Blockchain newBlockchain = BlockchainParser.JSONToBlockchain(JSONBlockchain, localNode);
+            localNode.handleNetworkBlockchain(newBlockchain);
+            logger.info("request_blockchain accepted by {}:{}", peer.getHost(), peer.getPort());
+        } catch (Exception e) {
+            logger.error("Failed to complete blockchain request", e);
+        }
+    }
+
     // ( occurs on command from ControlServer )
     public void formulateOutgoingConnectionRequest(String foreignHost, int foreignPort) {
         try {
             JSONObject data = new JSONObject();
             JSONObject message = formulateOutgoingMessage(data, "request_connection");
-            JSONObject response = MessageSender.send(foreignHost, foreignPort, message);
+            JSONObject response = messageSender.send(foreignHost, foreignPort, message);
 
             if (response.getBoolean("accepted")) {
                 JSONObject JSONPeer = response.getJSONObject("sender");
                 RemotePeer newPeer = NetworkParser.JSONToRemotePeer(JSONPeer);
-                knownPeers.addPeer(newPeer);
+                addPeer(newPeer);
                 logger.info("{} accepted by {}:{}", message.getString("message_type"), foreignHost, foreignPort);
             } else {
                 logger.warn("{} rejected by {}:{} - {}", message.getString("message_type"), foreignHost, foreignPort, response.getJSONObject("data").getString("reason"));
@@ -227,7 +444,81 @@ public class NetworkManager {
         }
     }
 
-    public void sendPingMessage() {}
+    /*
+    Adds a peer to known peers. The request_connection signature only proves the sender holds its key, not that it is at the address
+    it claims - so a new key at a known address only replaces the known peer once that address answers signed with the new key.
+     */
+    private void addPeer(RemotePeer peer) throws Exception {
+        RemotePeer previous = knownPeers.getPeerByAddress(peer.getHost(), peer.getPort());
+        if (previous == null || previous.equals(peer)) {
+            knownPeers.addPeer(peer); // Throws ArchivedException, OverflowException
+            return;
+        }
+
+        if (!confirmPeerAddress(peer)) {
+            throw new InvalidException("Another peer is known at " + peer.getAddress());
+        }
+        knownPeers.replacePeer(peer);
+        logger.info("Peer at {} now known by a new public key", peer.getAddress());
+    }
+
+    // ( true if the peer answering at the address signs its response with the peer's key )
+    private boolean confirmPeerAddress(RemotePeer peer) {
+        try {
+            JSONObject data = new JSONObject();
+            data.put("timestamp", System.currentTimeMillis());
+            JSONObject response = sendMessage(peer, formulateOutgoingMessage(data, "ping"));
+
+            // ( a rejection is still signed, so it is enough - the peer may not know this node yet )
+            return response.getJSONObject("sender").getString("public_key").equals(peer.getPublicKey())
+                    && Cryptography.verify(response.getJSONObject("data").toString(), response.getString("signature"), peer.getPublicKey());
+        } catch (Exception e) {
+            logger.debug("Unable to confirm {} - {}", peer.getAddress(), e.getMessage());
+            return false;
+        }
+    }
+
+    // ( occurs intermittedly - pings every known peer, benched ones included, so their round trip times stay current )
+    public void sendPingMessage() {
+        for (RemotePeer peer : knownPeers.getKnownPeers()) {
+            localNode.getEventExecutor().submit(() -> {
+                try {
+                    sendRequest(peer, "ping", new JSONObject());
+                } catch (Exception e) {
+                    logger.debug("Ping to {} failed - {}", peer.getAddress(), e.getMessage());
+                }
+            });
+        }
+    }
+
+    // ( sends a request to a peer and returns the response data, throwing InvalidException if the peer rejected it )
+    public JSONObject sendRequest(RemotePeer peer, String messageType, JSONObject data) throws Exception {
+        // Requests carry a timestamp so that repeated requests do not hash the same and get rejected as already seen
+        data.put("timestamp", System.currentTimeMillis());
+
+        JSONObject message = formulateOutgoingMessage(data, messageType);
+        JSONObject response = sendMessage(peer, message);
+
+        if (!response.getBoolean("accepted")) {
+            throw new InvalidException(messageType + " rejected by " + peer.getHost() + ":" + peer.getPort() + " - " + response.getJSONObject("data").getString("reason"));
+        }
+
+        return response.getJSONObject("data");
+    }
+
+
+    // ( sends a message to a peer and returns the response - a rejection still counts as an answer, only failing to get a response counts against the peer )
+    private JSONObject sendMessage(RemotePeer peer, JSONObject message) throws Exception {
+        try {
+            long sentAt = System.nanoTime();
+            JSONObject response = messageSender.send(peer.getHost(), peer.getPort(), message);
+            peerHealth.recordSuccess(peer, System.nanoTime() - sentAt);
+            return response;
+        } catch (Exception e) {
+            peerHealth.recordFailure(peer);
+            throw e;
+        }
+    }
 
 
     /* <---------General---Message---Constructors---------> */
@@ -262,6 +553,36 @@ public class NetworkManager {
         return message;
     }
 
+    /*
+    Forwards a received send message unchanged - the origin's hash and signature still cover the data, so it is not signed again.
+    relayed_by only tells the receiver which peer already has the message - it is not authenticated, so it never stands in for
+    the origin ( see MessageValidator ).
+     */
+    private void relayMessage(JSONObject message) {
+        // ( the origin and the peer that forwarded it already have the message )
+        markKnown(message.getJSONObject("sender"), message.getString("hash"));
+        if (message.has("relayed_by")) {
+            markKnown(message.getJSONObject("relayed_by"), message.getString("hash"));
+        }
+
+        JSONObject relayedMessage = new JSONObject(message, JSONObject.getNames(message));
+        relayedMessage.remove("request_id");
+        relayedMessage.put("relayed_by", formulatePeerID());
+        distributeSendMessage(relayedMessage);
+    }
+
+    // Helper for relayMessage() ( only known peers are tracked )
+    private void markKnown(JSONObject JSONPeer, String hash) {
+        try {
+            RemotePeer peer = NetworkParser.JSONToRemotePeer(JSONPeer);
+            if (knownPeers.containsPeer(peer)) {
+                peerInventory.markKnown(peer, hash);
+            }
+        } catch (Exception e) {
+            logger.debug("Unable to parse peer - {}", e.getMessage());
+        }
+    }
+
     // Helper for formulateOutgoingMessage(), constructResponse()
     private JSONObject formulatePeerID() {
         JSONObject peerID = new JSONObject();
@@ -282,9 +603,14 @@ public class NetworkManager {
         String response_messageType = "";
         JSONObject response_data = new JSONObject();
 
+        // ( inv is unsigned, so it is answered before validation )
+        if (messageType.equals("inv")) {
+            return handleInv(received_data);
+        }
+
         // Validate message
         try {
-            validateMessage(message);
+            messageValidator.validate(message);
         } catch (InvalidParameterException e) {
             response_data.put("reason", e.getMessage());
             return constructResponse(messageType, false, response_data);
@@ -296,8 +622,25 @@ public class NetworkManager {
                 try {
                     Vote vote = BlockchainParser.JSONToVote(received_data);
                     localNode.handleNetworkVote(vote);
-                    JSONObject newMessage = formulateOutgoingMessage(received_data,messageType);
-                    distributeSendMessage(newMessage);
+                    relayMessage(message);
+                    return constructResponse(messageType, true, response_data);
+                } catch (Exception e) {
+                    response_data.put("reason", e.getMessage());
+                    return constructResponse(messageType, false, response_data);
+                }
+            }
+            case "send_votes" -> {
+                try {
+                    // ( parses the whole batch first, so a malformed batch is rejected without handling any of it )
+                    List<Vote> votes = new ArrayList<>();
+                    for (Object object : received_data.getJSONArray("votes")) {
+                        votes.add(BlockchainParser.JSONToVote((JSONObject) object));
+                    }
+
+                    for (Vote vote : votes) {
+                        localNode.handleNetworkVote(vote);
+                    }
+                    relayMessage(message);
                     return constructResponse(messageType, true, response_data);
                 } catch (Exception e) {
                     response_data.put("reason", e.getMessage());
@@ -308,8 +651,7 @@ public class NetworkManager {
                 try {
                     String voter = received_data.getString("voter");
                     localNode.handleNetworkVoter(voter);
-                    JSONObject newMessage = formulateOutgoingMessage(received_data,messageType);
-                    distributeSendMessage(newMessage);
+                    relayMessage(message);
                     return constructResponse(messageType, true, response_data);
                 } catch (Exception e) {
                     response_data.put("reason", e.getMessage());
@@ -320,8 +662,7 @@ public class NetworkManager {
                 try {
                     Block block = BlockchainParser.JSONToBlock(received_data);
                     localNode.handleNetworkBlock(block);
-                    JSONObject newMessage = formulateOutgoingMessage(received_data,messageType);
-                    distributeSendMessage(newMessage);
+                    relayMessage(message);
                     return constructResponse(messageType, true, response_data);
                 } catch (Exception e) {
                     response_data.put("reason", e.getMessage());
@@ -331,7 +672,7 @@ public class NetworkManager {
             case "request_connection" -> {
                 try {
                     RemotePeer peer = NetworkParser.JSONToRemotePeer(message.getJSONObject("sender"));
-                    knownPeers.addPeer(peer);
+                    addPeer(peer);
                     return constructResponse(messageType, true, response_data);
                 } catch (Exception e) {
                     response_data.put("reason", e.getMessage());
@@ -347,6 +688,66 @@ public class NetworkManager {
                     return constructResponse(messageType, false, response_data);
                 }
             }
+            case "request_headers" -> {
+                try {
+                    response_data = localNode.getBlockchainHeadJSON();
+                    return constructResponse(messageType, true, response_data);
+                } catch (Exception e) {
+                    response_data.put("reason", e.getMessage());
+                    return constructResponse(messageType, false, response_data);
+                }
+            }
+            case "request_blocks_from" -> {
+                try {
+                    int fromHeight = received_data.getInt("from_height");
+                    String previousHash = received_data.getString("previous_hash");
+
+                    int maxBlocks = Math.min(received_data.optInt("max_blocks", MAX_BLOCKS_PER_RESPONSE), MAX_BLOCKS_PER_RESPONSE);
+
+                    JSONObject blocks = localNode.getBlocksFromJSON(fromHeight, previousHash, maxBlocks);
+                    if (blocks == null) {
+                        response_data.put("reason", "previous_hash does not match chain");
+                        response_data.put("diverged", true); // ( tells the requester a delta sync cannot succeed, unlike other rejections )
+                        return constructResponse(messageType, false, response_data);
+                    }
+
+                    return constructResponse(messageType, true, blocks);
+                } catch (Exception e) {
+                    response_data.put("reason", e.getMessage());
+                    return constructResponse(messageType, false, response_data);
+                }
+            }
+            case "request_header_chain" -> {
+                try {
+                    int fromHeight = received_data.getInt("from_height");
+                    int maxHeaders = Math.min(received_data.optInt("max_headers", MAX_HEADERS_PER_RESPONSE), MAX_HEADERS_PER_RESPONSE);
+
+                    response_data = localNode.getHeaderChainJSON(fromHeight, maxHeaders);
+                    return constructResponse(messageType, true, response_data);
+                } catch (Exception e) {
+                    response_data.put("reason", e.getMessage());
+                    return constructResponse(messageType, false, response_data);
+                }
+            }
+            case "request_vote_digest" -> {
+                try {
+                    RemotePeer sender = NetworkParser.JSONToRemotePeer(message.getJSONObject("sender"));
+                    response_data = gossipEngine.handleVoteDigest(sender, received_data);
+                    return constructResponse(messageType, true, response_data);
+                } catch (Exception e) {
+                    response_data.put("reason", e.getMessage());
+                    return constructResponse(messageType, false, response_data);
+                }
+            }
+            case "request_votes" -> {
+                try {
+                    response_data = gossipEngine.handleVoteRequest(received_data.getJSONArray("vote_ids"));
+                    return constructResponse(messageType, true, response_data);
+                } catch (Exception e) {
+                    response_data.put("reason", e.getMessage());
+                    return constructResponse(messageType, false, response_data);
+                }
+            }
             case "ping" -> {
                 return constructResponse(messageType, true, response_data);
             }
@@ -358,64 +759,36 @@ public class NetworkManager {
     }
 
     // Helpers for handleIncomingResponse()
-    public void validateMessage(JSONObject message) throws InvalidParameterException {
-        JSONObject sender;
-        String message_type;
-        JSONObject data;
-        String hash;
-        String signature;
-
-        // All message fields exist
-        try {
-            sender = message.getJSONObject("sender");
-            message_type = message.getString("message_type");
-            data = message.getJSONObject("data");
-            hash = message.getString("hash");
-            signature = message.getString("signature");
-        } catch (Exception e) {
-            throw new InvalidParameterException("Invalid message format: " + e.getMessage());
-        }
 
-        // Message has valid sender
-        RemotePeer senderPeer;
+    // ( getdata - the announced messages this node has not seen. Not signed, like the inv it answers )
+    private JSONObject handleInv(JSONObject received_data) {
+        JSONObject response_data = new JSONObject();
+        boolean accepted;
         try {
-            senderPeer = NetworkParser.JSONToRemotePeer(sender);
-        } catch (Exception e) {
-            throw new InvalidParameterException("Malformed sender field");
-        }
+            JSONArray hashes = received_data.getJSONArray("hashes");
+            if (hashes.length() > MAX_INV_HASHES) {
+                throw new InvalidException("inv carries more than " + MAX_INV_HASHES + " hashes");
+            }
 
-        // Message has valid signature
-        try {
-            Cryptography.verify(data.toString(), signature, senderPeer.getPublicKey());
+            JSONArray getdata = new JSONArray();
+            for (int i = 0; i < hashes.length(); i++) {
+                if (!messageCache.containsHash(hashes.getString(i))) {
+                    getdata.put(hashes.getString(i));
+                }
+            }
+            response_data.put("getdata", getdata);
+            accepted = true;
         } catch (Exception e) {
-            throw new InvalidParameterException("Invalid signature: " + e.getMessage());
-        }
-
-        if (messageCache.containsHash(hash)) {
-            throw new InvalidParameterException("Message already seen");
-        }
-
-
-        // Message has valid message type
-        List<String> message_types = new ArrayList<>();
-        message_types.add("send_vote");
-        message_types.add("send_voter");
-        message_types.add("send_block");
-        message_types.add("request_blockchain");
-        message_types.add("request_connection");
-
-        if (!message_types.contains(message_type)) {
-            throw new InvalidParameterException("Invalid message_type " + message_type);
-        }
-
-        // Sender in knownPeers ( unless requesting connection )
-        if (message_type.equals("request_connection")) {
-            return;
+            response_data.put("reason", e.getMessage());
+            accepted = false;
         }
 
-        if (!knownPeers.containsPeer(senderPeer)) {
-            throw new InvalidParameterException("Sender not in known peer list");
-        }
+        JSONObject response = new JSONObject();
+        response.put("sender", formulatePeerID());
+        response.put("message_type", "inv");
+        response.put("accepted", accepted);
+        response.put("data", response_data);
+        return response;
     }
 
     public JSONObject constructResponse(String messageType, boolean accepted, JSONObject data) {
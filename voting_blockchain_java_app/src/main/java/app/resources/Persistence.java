@@ -42,6 +42,9 @@ public class Persistence {
 
     private final Logger logger; // logging
 
+    // ( -Dblockchain.paranoid=true ignores the persisted checkpoint and re-validates the whole chain on load )
+    private final boolean paranoidValidation = Boolean.getBoolean("blockchain.paranoid");
+
     // Initialisation
     public Persistence(String host, int port, LocalNode localNode) { // default initialisation
         this.host = host;
@@ -89,13 +92,21 @@ public class Persistence {
         Blockchain newBlockchain;
 
         try {
-            newBlockchain = BlockchainParser.JSONToBlockchain(blockchainJson, localNode); // Throws MalformedJSONException
+            newBlockchain = BlockchainParser.JSONToBlockchain(blockchainJson, localNode); // Throws MalformedJSONException ( including for an out of range difficulty )
         } catch (MalformedJSONException e) {
             throw new LoadException("data/blockchain is malformed", e);
         }
 
+        JSONObject checkpoint = blockchainJson.optJSONObject("checkpoint");
+
         try {
-            newBlockchain.isValid(); // Throws InvalidBlockchainException
+            if (paranoidValidation || checkpoint == null) {
+                logger.info("Validating whole blockchain");
+                newBlockchain.isValid(); // Throws InvalidBlockchainException
+            } else {
+                logger.info("Validating blockchain from checkpoint");
+                newBlockchain.isValid(checkpoint.optInt("height", 0), checkpoint.optString("tipHash", "")); // Throws InvalidBlockchainException
+            }
         } catch (InvalidException e) {
             throw new LoadException("Loaded blockchain is invalid", e);
         }
@@ -165,6 +176,8 @@ public class Persistence {
             throw new LoadException("data/network_manager.json is missing or empty");
         }
 
+        migrateMessageCache(networkManagerJSON);
+
         NetworkManager networkManager;
 
         try {
@@ -176,6 +189,15 @@ public class Persistence {
         return networkManager;
     }
 
+    // ( caches persisted before the capacity was raised have the old fixed capacity, which is raised to the current default - any other capacity was chosen by the operator and is kept )
+    private void migrateMessageCache(JSONObject networkManagerJSON) {
+        JSONObject messageCacheJSON = networkManagerJSON.optJSONObject("message_cache");
+        if (messageCacheJSON != null && messageCacheJSON.optInt("max_length", -1) == MessageCache.LEGACY_MAX_LENGTH) {
+            messageCacheJSON.put("max_length", MessageCache.DEFAULT_MAX_LENGTH);
+            logger.info("Message cache capacity migrated from {} to {}", MessageCache.LEGACY_MAX_LENGTH, MessageCache.DEFAULT_MAX_LENGTH);
+        }
+    }
+
     private NetworkManager createNewNetworkManager() throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
         return new NetworkManager(host, port, localNode, new KnownPeers(), new MessageCache());
     }
@@ -202,6 +224,7 @@ public class Persistence {
     // Persistence
     public void persistBlockchain(Blockchain blockchain) throws PersistenceException {
         JSONObject persistentBlockchainJSON = BlockchainParser.BlockchainToJSON(blockchain);
+        persistentBlockchainJSON.put("checkpoint", BlockchainParser.checkpointToJSON(blockchain));
 
         try {
             FileHandlers.writeToJSONFile(persistentBlockchain.getPath(), persistentBlockchainJSON);
@@ -0,0 +1,147 @@
+package app.resources.blockchain;
+
+import app.resources.blockchain.resources.Block;
+import app.resources.exceptions.InvalidException;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Validates a chain on a ForkJoinPool by splitting it into ranges of blocks.
+
+Each range checks the hash link of every block to its predecessor, and runs Block.isValid ( hash, proof of work and votes )
+on every block at or after 'fromIndex'. The error reported is the same as checking every link before any block: the lowest
+broken link if there is one, otherwise the lowest invalid block.
+
+Ranges share the lowest failures found so far and check them before each block, so a failure cancels the work it makes
+irrelevant - a broken link stops every block check and every link check above it, an invalid block stops the block checks above it.
+ */
+public class ChainValidator {
+    private static final int RANGE_SIZE = 8; // Blocks validated sequentially by one task
+    private static final int NONE = Integer.MAX_VALUE;
+
+    // Fields
+    private final ForkJoinPool pool;
+
+    // Initialisation ( shares the common pool )
+    public ChainValidator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ChainValidator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Methods
+    public void validate(List<Block> chain, int fromIndex, int difficulty, int difficultyVersion) throws InvalidException {
+        if (chain.isEmpty()) {
+            return;
+        }
+
+        Failures failures = new Failures();
+        RangeResult result = pool.invoke(new RangeTask(chain, 0, chain.size(), fromIndex, difficulty, difficultyVersion, failures));
+
+        if (result.brokenLink >= 0) {
+            int i = result.brokenLink;
+            throw new InvalidException("chain broken between block " + i + " and " + (i + 1));
+        }
+
+        if (result.invalidBlock >= 0) {
+            int i = result.invalidBlock;
+            throw new InvalidException("Invalid block at index " + i + " with hash: "   + chain.get(i).getHash(), result.invalidBlockCause);
+        }
+    }
+
+    // ( lowest failures found by any range so far, NONE when none - shared by every range as the cancellation signal )
+    private static class Failures {
+        private final AtomicInteger lowestBrokenLink = new AtomicInteger(NONE);
+        private final AtomicInteger lowestInvalidBlock = new AtomicInteger(NONE);
+    }
+
+    // ( lowest failures found in a range, -1 when none )
+    private static class RangeResult {
+        private int brokenLink = -1;
+        private int invalidBlock = -1;
+        private InvalidException invalidBlockCause;
+
+        private RangeResult merge(RangeResult other) {
+            if (other.brokenLink >= 0 && (brokenLink < 0 || other.brokenLink < brokenLink)) {
+                brokenLink = other.brokenLink;
+            }
+            if (other.invalidBlock >= 0 && (invalidBlock < 0 || other.invalidBlock < invalidBlock)) {
+                invalidBlock = other.invalidBlock;
+                invalidBlockCause = other.invalidBlockCause;
+            }
+            return this;
+        }
+    }
+
+    private static class RangeTask extends RecursiveTask<RangeResult> {
+        private final List<Block> chain;
+        private final int start;
+        private final int end;
+        private final int fromIndex;
+        private final int difficulty;
+        private final int difficultyVersion;
+        private final Failures failures;
+
+        private RangeTask(List<Block> chain, int start, int end, int fromIndex, int difficulty, int difficultyVersion, Failures failures) {
+            this.chain = chain;
+            this.start = start;
+            this.end = end;
+            this.fromIndex = fromIndex;
+            this.difficulty = difficulty;
+            this.difficultyVersion = difficultyVersion;
+            this.failures = failures;
+        }
+
+        @Override
+        protected RangeResult compute() {
+            if (start > failures.lowestBrokenLink.get()) {
+                return new RangeResult();
+            }
+
+            if (end - start > RANGE_SIZE) {
+                int middle = (start + end) >>> 1;
+                RangeTask lower = new RangeTask(chain, start, middle, fromIndex, difficulty, difficultyVersion, failures);
+                RangeTask upper = new RangeTask(chain, middle, end, fromIndex, difficulty, difficultyVersion, failures);
+                upper.fork();
+                RangeResult result = lower.compute();
+                return result.merge(upper.join());
+            }
+
+            RangeResult result = new RangeResult();
+            for (int i = start; i < end; i++) {
+                // ( cancelled - a lower link is broken, so nothing above it can be reported )
+                if (i > failures.lowestBrokenLink.get()) {
+                    break;
+                }
+
+                Block block = chain.get(i);
+
+                // Verify hash link
+                if (i > 0 && !block.getPreviousHash().equals(chain.get(i - 1).getHash())) {
+                    result.brokenLink = i;
+                    failures.lowestBrokenLink.accumulateAndGet(i, Math::min);
+                    break;
+                }
+
+                // Verify block ( skipped once any link is broken, as links are reported first, or above a known invalid block )
+                if (i < fromIndex || result.invalidBlock >= 0 || failures.lowestBrokenLink.get() != NONE || i > failures.lowestInvalidBlock.get()) {
+                    continue;
+                }
+
+                try {
+                    block.isValid(difficulty, difficultyVersion);
+                } catch (InvalidException e) {
+                    result.invalidBlock = i;
+                    result.invalidBlockCause = e;
+                    failures.lowestInvalidBlock.accumulateAndGet(i, Math::min);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package app.resources.blockchain;
+
+import app.resources.blockchain.resources.Block;
+import app.resources.blockchain.resources.BlockHasher;
+import app.resources.exceptions.InvalidException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*; // ExecutorService, Future, ThreadPoolExecutor, LinkedBlockingQueue, TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class Miner {
+
+    // Fields
+    private final Logger logger = LoggerFactory.getLogger(Miner.class);
+
+    private final int workers;
+    private final ExecutorService pool;
+
+    private final Object runLock = new Object(); // ( one mining run at a time - each run uses every worker )
+
+    private final AtomicLong totalHashes;
+    private volatile RunStats lastRun; // ( replaced as a whole at the end of each run, so readers never see two runs mixed )
+
+    // ( hashes computed and time spent by each worker during one mining run )
+    private static class RunStats {
+        private final long[] workerHashes;
+        private final long[] workerNanos;
+        private final long runNanos;
+
+        private RunStats(long[] workerHashes, long[] workerNanos, long runNanos) {
+            this.workerHashes = workerHashes;
+            this.workerNanos = workerNanos;
+            this.runNanos = runNanos;
+        }
+    }
+
+    // Initialisation ( one worker per core )
+    public Miner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    // Initialisation ( with a fixed number of workers )
+    public Miner(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Miner requires at least one worker");
+        }
+
+        this.workers = workers;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Miner-Worker-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true); // Idle miners do not hold on to threads between blocks
+        this.pool = executor;
+
+        this.totalHashes = new AtomicLong();
+        this.lastRun = new RunStats(new long[workers], new long[workers], 0);
+    }
+
+    // Getters
+    public int getWorkers() {
+        return workers;
+    }
+
+    public long getTotalHashes() {
+        return totalHashes.get();
+    }
+
+    // ( hashes/sec of each worker during the last mining run )
+    public double[] getWorkerHashRates() {
+        RunStats run = lastRun;
+        double[] rates = new double[workers];
+        for (int i = 0; i < workers; i++) {
+            rates[i] = rate(run.workerHashes[i], run.workerNanos[i]);
+        }
+        return rates;
+    }
+
+    // ( hashes/sec of the whole pool during the last mining run )
+    public double getPoolHashRate() {
+        RunStats run = lastRun;
+        long hashes = 0;
+        for (long workerHash : run.workerHashes) {
+            hashes += workerHash;
+        }
+        return rate(hashes, run.runNanos);
+    }
+
+    private static double rate(long hashes, long nanos) {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return hashes * 1_000_000_000.0 / nanos;
+    }
+
+    // Methods
+
+    /*
+    Splits the nonce space between the workers by striding: worker w tries nonces w, w + workers, w + 2 * workers, ...
+    The first worker to find a hash meeting the difficulty sets the found flag, which stops every other worker.
+    Concurrent calls wait for the run in progress, as each run already keeps every worker busy.
+     */
+    public int findNonce(Block block, int difficulty, int difficultyVersion) throws InvalidException {
+        synchronized (runLock) {
+            return runFindNonce(block, difficulty, difficultyVersion);
+        }
+    }
+
+    // ( callers hold runLock )
+    private int runFindNonce(Block block, int difficulty, int difficultyVersion) throws InvalidException {
+        AtomicBoolean found = new AtomicBoolean(false);
+        AtomicInteger winningNonce = new AtomicInteger();
+
+        // ( this run's counters - published together as lastRun once every worker has stopped )
+        AtomicLongArray workerHashes = new AtomicLongArray(workers);
+        AtomicLongArray workerNanos = new AtomicLongArray(workers);
+
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < workers; i++) {
+            int worker = i;
+            futures.add(pool.submit(() -> {
+                long workerStart = System.nanoTime();
+                BlockHasher hasher = new BlockHasher(block); // Each worker digests the fixed block prefix once
+
+                for (long nonce = worker; nonce <= Integer.MAX_VALUE && !found.get(); nonce += workers) {
+                    boolean hit = hasher.meetsDifficulty((int) nonce, difficulty, difficultyVersion);
+                    workerHashes.incrementAndGet(worker);
+
+                    if (hit) {
+                        if (found.compareAndSet(false, true)) {
+                            winningNonce.set((int) nonce);
+                        }
+                        break;
+                    }
+                }
+
+                workerNanos.set(worker, System.nanoTime() - workerStart);
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            found.set(true); // Stops remaining workers
+            Thread.currentThread().interrupt();
+            throw new InvalidException("Mining interrupted", e);
+        } catch (ExecutionException e) {
+            found.set(true);
+            throw new InvalidException("Hash computation failed", e.getCause());
+        } finally {
+            long[] runWorkerHashes = new long[workers];
+            long[] runWorkerNanos = new long[workers];
+            for (int i = 0; i < workers; i++) {
+                runWorkerHashes[i] = workerHashes.get(i);
+                runWorkerNanos[i] = workerNanos.get(i);
+            }
+            lastRun = new RunStats(runWorkerHashes, runWorkerNanos, System.nanoTime() - start);
+        }
+
+        long runHashes = 0;
+        for (int i = 0; i < workers; i++) {
+            runHashes += workerHashes.get(i);
+        }
+        totalHashes.addAndGet(runHashes);
+
+        if (!found.get()) {
+            throw new InvalidException("Nonce space exhausted without finding a valid hash");
+        }
+
+        logger.info("Nonce {} found after {} hashes ( {} hashes/sec across {} workers )", winningNonce.get(), runHashes, String.format("%.0f", getPoolHashRate()), workers);
+        return winningNonce.get();
+    }
+
+}
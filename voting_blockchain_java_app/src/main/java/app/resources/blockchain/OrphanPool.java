@@ -0,0 +1,150 @@
+package app.resources.blockchain;
+
+import app.resources.blockchain.resources.Block;
+
+import java.util.*; // ArrayDeque, ArrayList, Deque, HashMap, HashSet, List, Map, Set
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Holds blocks that arrived before their parent, indexed by the parent's hash.
+
+When a block is added to the chain its children can be taken from the pool and connected in turn.
+The pool is bounded - once full, the oldest orphan is evicted to make room.
+ */
+public class OrphanPool {
+
+    // Fields
+    private final int maxSize;
+
+    private final Map<String, List<Orphan>> orphansByParent; // previousHash -> orphans
+    private final Deque<Orphan> arrivalOrder; // ( oldest first, for eviction )
+    private final Set<String> orphanHashes;
+
+    private final AtomicLong added;
+    private final AtomicLong connected;
+    private final AtomicLong evicted;
+    private final AtomicLong totalConnectNanos;
+    private volatile long lastConnectNanos;
+
+    private static class Orphan {
+        private final Block block;
+        private final long receivedAt; // System.nanoTime()
+
+        private Orphan(Block block) {
+            this.block = block;
+            this.receivedAt = System.nanoTime();
+        }
+    }
+
+    // Initialisation
+    public OrphanPool(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Orphan pool size must be at least 1");
+        }
+
+        this.maxSize = maxSize;
+        this.orphansByParent = new HashMap<>();
+        this.arrivalOrder = new ArrayDeque<>();
+        this.orphanHashes = new HashSet<>();
+
+        this.added = new AtomicLong();
+        this.connected = new AtomicLong();
+        this.evicted = new AtomicLong();
+        this.totalConnectNanos = new AtomicLong();
+    }
+
+    // Getters
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int getSize() {
+        return arrivalOrder.size();
+    }
+
+    public long getAdded() {
+        return added.get();
+    }
+
+    public long getConnected() {
+        return connected.get();
+    }
+
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    // ( time from an orphan arriving to it being connected, in milliseconds )
+    public double getAverageConnectLatency() {
+        long count = connected.get();
+        if (count == 0) {
+            return 0;
+        }
+        return totalConnectNanos.get() / (count * 1_000_000.0);
+    }
+
+    public double getLastConnectLatency() {
+        return lastConnectNanos / 1_000_000.0;
+    }
+
+    // Methods
+
+    // ( returns false if the block is already in the pool )
+    public synchronized boolean add(Block block) {
+        if (!orphanHashes.add(block.getHash())) {
+            return false;
+        }
+
+        if (arrivalOrder.size() >= maxSize) {
+            evict(arrivalOrder.peekFirst());
+        }
+
+        Orphan orphan = new Orphan(block);
+        arrivalOrder.addLast(orphan);
+        orphansByParent.computeIfAbsent(block.getPreviousHash(), parent -> new ArrayList<>()).add(orphan);
+
+        added.incrementAndGet();
+        return true;
+    }
+
+    // ( removes and returns the orphans whose parent is 'parentHash', oldest first )
+    public synchronized List<Block> takeChildren(String parentHash) {
+        List<Orphan> children = orphansByParent.remove(parentHash);
+        if (children == null) {
+            return new ArrayList<>();
+        }
+
+        long now = System.nanoTime();
+        List<Block> blocks = new ArrayList<>();
+        for (Orphan orphan : children) {
+            arrivalOrder.remove(orphan);
+            orphanHashes.remove(orphan.block.getHash());
+
+            lastConnectNanos = now - orphan.receivedAt;
+            totalConnectNanos.addAndGet(lastConnectNanos);
+            connected.incrementAndGet();
+
+            blocks.add(orphan.block);
+        }
+        return blocks;
+    }
+
+    public synchronized void clear() {
+        orphansByParent.clear();
+        arrivalOrder.clear();
+        orphanHashes.clear();
+    }
+
+    private void evict(Orphan orphan) {
+        arrivalOrder.remove(orphan);
+        orphanHashes.remove(orphan.block.getHash());
+
+        List<Orphan> siblings = orphansByParent.get(orphan.block.getPreviousHash());
+        siblings.remove(orphan);
+        if (siblings.isEmpty()) {
+            orphansByParent.remove(orphan.block.getPreviousHash());
+        }
+
+        evicted.incrementAndGet();
+    }
+}
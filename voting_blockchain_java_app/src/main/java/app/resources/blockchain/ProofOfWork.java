@@ -0,0 +1,79 @@
+package app.resources.blockchain;
+
+import java.util.Base64;
+
+/*
+Difficulty versions understood by the chain.
+
+    BASE64_PREFIX ( 1 )     - legacy: the Base64 hash must start with 'difficulty' '0' characters ( 6 bit steps )
+    LEADING_ZERO_BITS ( 2 ) - the raw SHA-256 digest must start with 'difficulty' zero bits ( 1 bit steps )
+
+Chains persisted before difficulty was versioned have no version field and are read as BASE64_PREFIX.
+ */
+public class ProofOfWork {
+    public static final int BASE64_PREFIX = 1;
+    public static final int LEADING_ZERO_BITS = 2;
+
+    public static final int DIGEST_BITS = 256; // SHA-256
+    public static final int DIGEST_BASE64_CHARS = 43; // ( excluding the '=' padding, which is never '0' )
+
+    public static boolean isSupported(int difficultyVersion) {
+        return difficultyVersion == BASE64_PREFIX || difficultyVersion == LEADING_ZERO_BITS;
+    }
+
+    // ( a difficulty outside this range cannot be checked against a digest )
+    public static int maxDifficulty(int difficultyVersion) {
+        if (difficultyVersion == LEADING_ZERO_BITS) {
+            return DIGEST_BITS;
+        }
+        return DIGEST_BASE64_CHARS;
+    }
+
+    public static boolean isValidDifficulty(int difficulty, int difficultyVersion) {
+        return isSupported(difficultyVersion) && difficulty >= 0 && difficulty <= maxDifficulty(difficultyVersion);
+    }
+
+    // ( checks a stored Base64 hash against the difficulty )
+    public static boolean meetsDifficulty(String hash, int difficulty, int difficultyVersion) {
+        if (!isValidDifficulty(difficulty, difficultyVersion)) {
+            return false;
+        }
+
+        if (difficultyVersion == LEADING_ZERO_BITS) {
+            byte[] digest;
+            try {
+                digest = Base64.getDecoder().decode(hash);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            return hasLeadingZeroBits(digest, difficulty);
+        }
+
+        return hash.startsWith("0".repeat(difficulty));
+    }
+
+    // ( checks the first 'bits' bits of a raw digest are zero )
+    public static boolean hasLeadingZeroBits(byte[] digest, int bits) {
+        if (bits < 0 || bits > digest.length * 8) {
+            return false;
+        }
+
+        int fullBytes = bits >>> 3;
+        for (int i = 0; i < fullBytes; i++) {
+            if (digest[i] != 0) {
+                return false;
+            }
+        }
+
+        int remainingBits = bits & 7;
+        return remainingBits == 0 || ((digest[fullBytes] & 0xff) >>> (8 - remainingBits)) == 0;
+    }
+
+    // ( expected work in bits, so chains with different difficulty versions can be compared )
+    public static int workBits(int difficulty, int difficultyVersion) {
+        if (difficultyVersion == LEADING_ZERO_BITS) {
+            return difficulty;
+        }
+        return difficulty * 6; // Each Base64 character carries 6 bits
+    }
+}
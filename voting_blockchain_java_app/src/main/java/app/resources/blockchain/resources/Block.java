@@ -1,9 +1,9 @@
 package app.resources.blockchain.resources;
 
-import app.resources.util.Cryptography;
+import app.resources.blockchain.Miner;
+import app.resources.blockchain.ProofOfWork;
 import app.resources.exceptions.*;
 
-import java.security.NoSuchAlgorithmException;
 import java.util.List;
 
 public class Block {
@@ -52,31 +52,42 @@ public class Block {
 
     // Methods
     public String computeHash() {
-      String data = serialise();
-      try {
-          return Cryptography.hash(data);
-      } catch (NoSuchAlgorithmException e) {
-          hash = "";
-          throw new IllegalStateException("SHA-256 algorithm is not available");
-      }
+        return computeHash(nonce);
+    }
+
+    // ( computes the hash the block would have with the given nonce, without changing the block )
+    public String computeHash(int nonce) {
+        return new BlockHasher(this).hash(nonce);
     }
 
     public void mineBlock(int difficulty) throws InvalidException {
         String prefix = "0".repeat(difficulty);
+        BlockHasher hasher = new BlockHasher(this);
 
         while (!hash.startsWith(prefix)) {
-            nonce++;
-            hash = computeHash();
-
-            if (hash == null) {
-                throw new InvalidException("Hash computation failed");
+            if (nonce == Integer.MAX_VALUE) {
+                throw new InvalidException("Nonce space exhausted without finding a valid hash");
             }
 
+            nonce++;
+            if (hasher.hasZeroPrefix(nonce, difficulty)) {
+                hash = hasher.hash(nonce); // Only encoded to a String on a hit
+            }
         }
 
     }
 
+    // ( searches the nonce space on the miner's worker pool )
+    public void mineBlock(int difficulty, int difficultyVersion, Miner miner) throws InvalidException {
+        nonce = miner.findNonce(this, difficulty, difficultyVersion);
+        hash = computeHash();
+    }
+
     public void isValid(int difficulty) throws InvalidException {
+        isValid(difficulty, ProofOfWork.BASE64_PREFIX);
+    }
+
+    public void isValid(int difficulty, int difficultyVersion) throws InvalidException {
 
         // Verify block hash
         String computedHash = computeHash();
@@ -85,8 +96,7 @@ public class Block {
         }
 
         // Verify proof of work
-        String prefix = "0".repeat(difficulty);
-        if (!hash.startsWith(prefix)) {
+        if (!ProofOfWork.meetsDifficulty(hash, difficulty, difficultyVersion)) {
             throw new InvalidException("Block: No proof of work: \n \t Hash: " + hash);
         }
 
@@ -102,11 +112,16 @@ public class Block {
     }
 
     public String serialise() {
+        return serialisePrefix() + nonce;
+    }
+
+    // ( everything serialise() covers except the nonce, which is appended last )
+    public String serialisePrefix() {
         StringBuilder sb = new StringBuilder();
         for (Vote vote: votes){
             sb.append(vote.serialise());
         }
-        return sb.toString() + "||||||" + previousHash + "||||||" + timestamp + "||||||" + nonce;
+        return sb.toString() + "||||||" + previousHash + "||||||" + timestamp + "||||||";
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package app.resources.blockchain.resources;
+
+import app.resources.blockchain.ProofOfWork;
+import app.resources.util.Cryptography;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/*
+Hashes a block for many nonces without rebuilding the block string each time.
+
+The votes, previousHash and timestamp never change while mining, so they are digested once into a prefix state.
+Each nonce then only clones that state, writes the nonce digits into a reused buffer and finishes the digest.
+The result is byte-for-byte the same as Cryptography.hash(block.serialise()).
+
+Not thread safe - each mining worker keeps its own BlockHasher.
+ */
+public class BlockHasher {
+
+    // Fields
+    private final MessageDigest prefixDigest; // ( state after digesting "votes||||||previousHash||||||timestamp||||||" )
+
+    private final byte[] nonceBuffer = new byte[11]; // ( fits "-2147483648" )
+    private final byte[] digestBuffer = new byte[32]; // ( SHA-256 output )
+    private final byte[] encodedBuffer = new byte[44]; // ( Base64 of 32 bytes with padding )
+
+    private final Base64.Encoder encoder = Base64.getEncoder();
+
+    // Initialisation
+    public BlockHasher(Block block) {
+        MessageDigest digest = Cryptography.digestEngine();
+        digest.update(block.serialisePrefix().getBytes());
+        try {
+            this.prefixDigest = (MessageDigest) digest.clone(); // Keeps the prefix state, the thread's engine is free again
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("SHA-256 digest cannot be cloned", e);
+        } finally {
+            digest.reset();
+        }
+    }
+
+    // Methods
+
+    // ( hash of the block with the given nonce, in the same Base64 format stored on the block )
+    public String hash(int nonce) {
+        digest(nonce);
+        encoder.encode(digestBuffer, encodedBuffer);
+        return new String(encodedBuffer, 0, encodedBuffer.length, StandardCharsets.US_ASCII);
+    }
+
+    // ( checks the Base64 prefix directly on the encoded bytes, so misses never allocate a String )
+    public boolean hasZeroPrefix(int nonce, int difficulty) {
+        if (difficulty < 0 || difficulty > ProofOfWork.DIGEST_BASE64_CHARS) {
+            return false;
+        }
+
+        digest(nonce);
+        encoder.encode(digestBuffer, encodedBuffer);
+        for (int i = 0; i < difficulty; i++) {
+            if (encodedBuffer[i] != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ( checks the leading zero bits on the raw digest, so candidates are never Base64-encoded )
+    public boolean hasLeadingZeroBits(int nonce, int bits) {
+        digest(nonce);
+        return ProofOfWork.hasLeadingZeroBits(digestBuffer, bits);
+    }
+
+    public boolean meetsDifficulty(int nonce, int difficulty, int difficultyVersion) {
+        if (difficultyVersion == ProofOfWork.LEADING_ZERO_BITS) {
+            return hasLeadingZeroBits(nonce, difficulty);
+        }
+        return hasZeroPrefix(nonce, difficulty);
+    }
+
+    // ( leaves the raw SHA-256 of the block with the given nonce in digestBuffer )
+    private void digest(int nonce) {
+        MessageDigest digest;
+        try {
+            digest = (MessageDigest) prefixDigest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("SHA-256 digest cannot be cloned", e);
+        }
+
+        int start = writeNonce(nonce);
+        digest.update(nonceBuffer, start, nonceBuffer.length - start);
+
+        try {
+            digest.digest(digestBuffer, 0, digestBuffer.length);
+        } catch (DigestException e) {
+            throw new IllegalStateException("SHA-256 digest failed", e);
+        }
+    }
+
+    // ( writes the decimal digits of the nonce right-aligned into nonceBuffer and returns where they start )
+    private int writeNonce(int nonce) {
+        int position = nonceBuffer.length;
+        long value = nonce;
+        boolean negative = value < 0;
+        if (negative) {
+            value = -value;
+        }
+
+        do {
+            nonceBuffer[--position] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+
+        if (negative) {
+            nonceBuffer[--position] = '-';
+        }
+        return position;
+    }
+
+}
@@ -5,6 +5,7 @@ import java.security.spec.InvalidKeySpecException;
 import java.util.Base64;
 
 import app.resources.exceptions.InvalidException;
+import app.resources.util.BoundedCache;
 import app.resources.util.Cryptography;
 
 public class Vote {
@@ -14,6 +15,9 @@ public class Vote {
     private final int voteValue;
     private String signature;
 
+    // ( votes whose signature has already been verified, so mempool, block and whole-chain checks only pay for RSA once )
+    private static final BoundedCache<String, Boolean> verifiedSignatures = new BoundedCache<>(65536);
+
     // Initialisation ( for creating  a vote)
     public Vote(String voter, int voteValue) {
         this.voter = voter;
@@ -40,6 +44,10 @@ public class Vote {
         return signature;
     }
 
+    public static BoundedCache<String, Boolean> getVerifiedSignatures() {
+        return verifiedSignatures;
+    }
+
     // Methods
 
     // Methods may not be needed as votes are submitted fully signed
@@ -47,7 +55,7 @@ public class Vote {
         try{
             String data = voter + voteValue;
 
-            Signature signer = Signature.getInstance("SHA256withRSA"); // Signature object for SHA-256
+            Signature signer = Cryptography.signatureEngine(); // Signature object for SHA-256 ( reused by this thread )
             signer.initSign(privateKey); // Initialises object for signing ( with given private key )
             signer.update(data.getBytes()); // Updates data to be signed ( with vote data )
 
@@ -58,15 +66,20 @@ public class Vote {
     }
 
     public void isValid() throws InvalidException {
+        String memoKey = verifiedSignatureKey();
+        if (verifiedSignatures.get(memoKey) != null) {
+            return;
+        }
+
         boolean isValid;
 
         try {
             String data = voter + "|||"  + voteValue;
-            Signature verifier = Signature.getInstance("SHA256withRSA"); // Signature object for SHA-256
+            Signature verifier = Cryptography.signatureEngine(); // Signature object for SHA-256 ( reused by this thread )
             verifier.initVerify(Cryptography.stringToPublicKey(getVoter())); // Initialises the object for verification ( with expected signers public_key )
             verifier.update(data.getBytes()); // Updates data to be verified ( with expected vote data )
             isValid = verifier.verify(Base64.getDecoder().decode(signature));
-        } catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
+        } catch (InvalidKeyException | SignatureException e) {
             throw new InvalidException("VOTE: Unable to verify", e);
         }
 
@@ -74,7 +87,21 @@ public class Vote {
             throw new InvalidException("VOTE: Invalid Signature");
         }
 
+        verifiedSignatures.put(memoKey, Boolean.TRUE); // Only successful verifications are remembered
+    }
+
+    // ( digest of voter, voteValue and signature - any change to one of them misses the memo )
+    private String verifiedSignatureKey() throws InvalidException {
+        try {
+            return Cryptography.hash(serialise());
+        } catch (NoSuchAlgorithmException e) {
+            throw new InvalidException("VOTE: Unable to verify", e);
+        }
+    }
 
+    // ( hash of the serialised vote - identifies a vote in anti-entropy digests )
+    public String getId() throws NoSuchAlgorithmException {
+        return Cryptography.hash(serialise());
     }
 
     public String serialise() {
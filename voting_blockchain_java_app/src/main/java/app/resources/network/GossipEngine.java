@@ -0,0 +1,233 @@
+package app.resources.network;
+
+import app.LocalNode;
+import app.resources.JSONParsers.BlockchainParser;
+import app.resources.JSONParsers.NetworkParser;
+import app.resources.NetworkManager;
+import app.resources.blockchain.resources.Vote;
+import app.resources.exceptions.MalformedJSONException;
+import app.resources.network.resources.RemotePeer;
+import app.resources.util.BloomFilter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*; // ArrayList, Collection, HashSet, List, Map, Set
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/*
+How many peers send messages go to, and push-pull anti-entropy of pending votes.
+
+Fan-out: the base fan-out ( -Dnode.fanout, default 3 ) is raised to ln(known peers) + 1 as the network grows, then divided by the
+smoothed share of sends that reached their peer, so a lossy network gets more copies. It is capped at -Dnode.fanout.max ( default 8 ).
+
+Anti-entropy, every round:
+    1. this node sends the ids of its pending votes to one peer ( request_vote_digest )
+    2. the peer replies with the ids of its pending votes missing from the digest, and fetches the ids it lacks from this node
+    3. this node fetches the ids it lacks from the peer ( request_votes )
+A vote that missed every gossip target so still reaches the miner within a few rounds, without being flooded again.
+With more than MAX_VOTE_IDS pending votes the digest is a Bloom filter of the ids instead. The peer can then only reply with what
+this node lacks ( step 3 ) - it fetches what it lacks in its own rounds.
+ */
+public class GossipEngine {
+    private static final int DEFAULT_FAN_OUT = 3;
+    private static final int DEFAULT_MAX_FAN_OUT = 8;
+    private static final double DELIVERY_SMOOTHING = 0.1; // Weight of the newest send in the delivery rate
+    private static final double MIN_DELIVERY_RATE = 0.25; // ( limits how far failed sends can raise the fan-out )
+    private static final int MAX_VOTE_IDS = 4096; // Per digest and per request_votes
+    private static final double DIGEST_FALSE_POSITIVE_RATE = 0.01; // ( a false positive only delays a vote to a later round )
+
+    // Fields
+    private final Logger logger = LoggerFactory.getLogger(GossipEngine.class);
+
+    private final NetworkManager networkManager;
+    private final LocalNode localNode;
+
+    private final int baseFanOut;
+    private final int maxFanOut;
+    private double deliveryRate = 1; // Smoothed share of sends that reached their peer
+
+    private final AtomicLong rounds = new AtomicLong();
+    private final AtomicLong votesFetched = new AtomicLong();
+    private final AtomicLong votesServed = new AtomicLong();
+
+    // Initialisation
+    public GossipEngine(NetworkManager networkManager, LocalNode localNode) {
+        this(networkManager, localNode, Integer.getInteger("node.fanout", DEFAULT_FAN_OUT), Integer.getInteger("node.fanout.max", DEFAULT_MAX_FAN_OUT));
+    }
+
+    public GossipEngine(NetworkManager networkManager, LocalNode localNode, int baseFanOut, int maxFanOut) {
+        this.networkManager = networkManager;
+        this.localNode = localNode;
+        this.baseFanOut = Math.max(1, baseFanOut);
+        this.maxFanOut = Math.max(this.baseFanOut, maxFanOut);
+    }
+
+    // Getters
+    public int getFanOut() {
+        int peers = networkManager.getKnownPeers().getSize();
+        double wanted = Math.max(baseFanOut, Math.log(peers) + 1);
+        int fanOut = (int) Math.ceil(wanted / Math.max(getDeliveryRate(), MIN_DELIVERY_RATE));
+        return Math.min(fanOut, maxFanOut);
+    }
+
+    public int getBaseFanOut() {
+        return baseFanOut;
+    }
+
+    public int getMaxFanOut() {
+        return maxFanOut;
+    }
+
+    public synchronized double getDeliveryRate() {
+        return deliveryRate;
+    }
+
+    public long getRounds() {
+        return rounds.get();
+    }
+
+    public long getVotesFetched() {
+        return votesFetched.get();
+    }
+
+    public long getVotesServed() {
+        return votesServed.get();
+    }
+
+    // Methods
+
+    // ( a send counts as delivered if the peer answered, even with a rejection )
+    public synchronized void recordDelivery(boolean delivered) {
+        deliveryRate = (DELIVERY_SMOOTHING * (delivered ? 1 : 0)) + ((1 - DELIVERY_SMOOTHING) * deliveryRate);
+    }
+
+    // ( occurs intermittedly - one anti-entropy round with one peer )
+    public void runAntiEntropy() {
+        for (RemotePeer peer : networkManager.getPeerHealth().selectPeers(1)) {
+            try {
+                Set<String> pendingIds = localNode.getPendingVotesById().keySet();
+
+                JSONObject data = new JSONObject();
+                if (pendingIds.size() > MAX_VOTE_IDS) {
+                    BloomFilter voteFilter = new BloomFilter(pendingIds.size(), DIGEST_FALSE_POSITIVE_RATE);
+                    for (String id : pendingIds) {
+                        voteFilter.add(id);
+                    }
+                    data.put("vote_filter", NetworkParser.bloomFilterToJSON(voteFilter));
+                } else {
+                    data.put("vote_ids", idsToJSON(pendingIds));
+                }
+                List<String> missingIds = JSONToIds(networkManager.sendRequest(peer, "request_vote_digest", data).getJSONArray("vote_ids"));
+
+                rounds.incrementAndGet();
+                if (!missingIds.isEmpty()) {
+                    logger.info("Anti-entropy with {}: fetching {} missing votes", peer.getAddress(), missingIds.size());
+                    fetchVotes(peer, missingIds);
+                }
+            } catch (Exception e) {
+                logger.warn("Anti-entropy with {} failed - {}", peer.getAddress(), e.getMessage());
+            }
+        }
+    }
+
+    // ( handles request_vote_digest - returns the ids of our pending votes missing from the digest, and fetches the ones we lack in the background )
+    public JSONObject handleVoteDigest(RemotePeer sender, JSONObject digest) throws MalformedJSONException {
+        Set<String> pendingIds = localNode.getPendingVotesById().keySet();
+
+        // ( a Bloom filter digest cannot be listed, so nothing is fetched back from the sender )
+        Set<String> digestIds = new HashSet<>();
+        Predicate<String> inDigest;
+        if (digest.has("vote_filter")) {
+            inDigest = NetworkParser.JSONToBloomFilter(digest.getJSONObject("vote_filter"))::mightContain;
+        } else {
+            digestIds.addAll(JSONToIds(digest.getJSONArray("vote_ids")));
+            inDigest = digestIds::contains;
+        }
+
+        List<String> senderLacks = new ArrayList<>();
+        for (String id : pendingIds) {
+            if (senderLacks.size() < MAX_VOTE_IDS && !inDigest.test(id)) {
+                senderLacks.add(id);
+            }
+        }
+
+        List<String> weLack = new ArrayList<>();
+        for (String id : digestIds) {
+            if (weLack.size() < MAX_VOTE_IDS && !pendingIds.contains(id)) {
+                weLack.add(id);
+            }
+        }
+
+        if (!weLack.isEmpty()) {
+            localNode.getEventExecutor().submit(() -> {
+                try {
+                    fetchVotes(sender, weLack);
+                } catch (Exception e) {
+                    logger.warn("Unable to fetch votes from {} - {}", sender.getAddress(), e.getMessage());
+                }
+            });
+        }
+
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("vote_ids", idsToJSON(senderLacks));
+        return jsonObject;
+    }
+
+    // ( handles request_votes - returns the requested votes that are still pending )
+    public JSONObject handleVoteRequest(JSONArray JSONIds) {
+        Map<String, Vote> pendingVotes = localNode.getPendingVotesById();
+
+        JSONArray JSONVotes = new JSONArray();
+        for (String id : JSONToIds(JSONIds)) {
+            Vote vote = pendingVotes.get(id);
+            if (vote != null) {
+                JSONVotes.put(BlockchainParser.VoteToJSON(vote));
+            }
+        }
+        votesServed.addAndGet(JSONVotes.length());
+
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("votes", JSONVotes);
+        return jsonObject;
+    }
+
+    // ( only votes that were asked for are kept - a peer cannot slip in others )
+    private void fetchVotes(RemotePeer peer, Collection<String> ids) throws Exception {
+        JSONObject data = new JSONObject();
+        data.put("vote_ids", idsToJSON(ids));
+        JSONArray JSONVotes = networkManager.sendRequest(peer, "request_votes", data).getJSONArray("votes");
+
+        Set<String> requestedIds = new HashSet<>(ids);
+        for (Object object : JSONVotes) {
+            Vote vote = BlockchainParser.JSONToVote((JSONObject) object);
+            if (requestedIds.remove(vote.getId())) {
+                localNode.handleNetworkVote(vote);
+                votesFetched.incrementAndGet();
+            }
+        }
+    }
+
+    // Helpers
+    private JSONArray idsToJSON(Collection<String> ids) {
+        JSONArray JSONIds = new JSONArray();
+        for (String id : ids) {
+            if (JSONIds.length() >= MAX_VOTE_IDS) {
+                break;
+            }
+            JSONIds.put(id);
+        }
+        return JSONIds;
+    }
+
+    private List<String> JSONToIds(JSONArray JSONIds) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < Math.min(JSONIds.length(), MAX_VOTE_IDS); i++) {
+            ids.add(JSONIds.getString(i));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,269 @@
+package app.resources.network;
+
+import app.LocalNode;
+import app.resources.JSONParsers.BlockchainParser;
+import app.resources.NetworkManager;
+import app.resources.blockchain.ProofOfWork;
+import app.resources.blockchain.resources.Block;
+import app.resources.exceptions.InvalidException;
+import app.resources.network.resources.RemotePeer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*; // ArrayDeque, ArrayList, Deque, List
+import java.util.concurrent.*; // CompletableFuture, ExecutorService, Executors
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Header-first chain download for nodes that are far behind a peer.
+
+    1. The header chain ( hash, previousHash ) above our tip is fetched from one peer and its links and claimed proof of work are checked.
+    2. Block bodies are split into ranges and fetched in parallel from several known peers.
+    3. Ranges are applied to the blockchain in order as they arrive - each body must hash to the header fetched in step 1.
+Only MAX_RANGES_IN_FLIGHT ranges ahead of the next one to apply are requested at a time, so a slow range holds back at most
+that many fetched ranges in memory rather than the rest of the chain.
+ */
+public class HeaderSync {
+    private static final int HEADERS_PER_REQUEST = 2048;
+    private static final int BLOCKS_PER_RANGE = 64;
+    private static final int MAX_BODY_PEERS = 4;
+    private static final int MAX_RANGES_IN_FLIGHT = 2 * MAX_BODY_PEERS; // Ranges fetched or waiting to be applied at a time
+
+    // Fields
+    private final Logger logger = LoggerFactory.getLogger(HeaderSync.class);
+
+    private final NetworkManager networkManager;
+    private final LocalNode localNode;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    // Progress ( of the current or last sync )
+    private volatile String state = "idle";
+    private volatile int startHeight;
+    private volatile int targetHeight;
+    private final AtomicInteger headersFetched = new AtomicInteger();
+    private final AtomicInteger blocksFetched = new AtomicInteger();
+    private final AtomicInteger blocksApplied = new AtomicInteger();
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    // Initialisation
+    public HeaderSync(NetworkManager networkManager, LocalNode localNode) {
+        this.networkManager = networkManager;
+        this.localNode = localNode;
+    }
+
+    // Getters
+    public String getState() {
+        return state;
+    }
+
+    public int getStartHeight() {
+        return startHeight;
+    }
+
+    public int getTargetHeight() {
+        return targetHeight;
+    }
+
+    public int getHeadersFetched() {
+        return headersFetched.get();
+    }
+
+    public int getBlocksFetched() {
+        return blocksFetched.get();
+    }
+
+    public int getBlocksApplied() {
+        return blocksApplied.get();
+    }
+
+    // ( blocks applied per second since the sync started )
+    public double getBlocksPerSecond() {
+        long end = finishedAt > startedAt ? finishedAt : System.currentTimeMillis();
+        long elapsed = end - startedAt;
+        if (startedAt == 0 || elapsed <= 0) {
+            return 0;
+        }
+        return blocksApplied.get() * 1000.0 / elapsed;
+    }
+
+    // Methods
+
+    // ( returns false if the peer's chain does not extend ours, so the caller can fall back to a full blockchain request )
+    public boolean sync(RemotePeer headerPeer, int peerHeight) throws Exception {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Header sync already running");
+            return true;
+        }
+
+        try {
+            JSONObject localHead = localNode.getBlockchainHeadJSON();
+            int difficulty = localHead.getInt("difficulty");
+            int difficultyVersion = localHead.getInt("difficultyVersion");
+
+            startHeight = localHead.getInt("height");
+            targetHeight = peerHeight;
+            headersFetched.set(0);
+            blocksFetched.set(0);
+            blocksApplied.set(0);
+            startedAt = System.currentTimeMillis();
+            finishedAt = 0;
+
+            // Headers
+            state = "headers";
+            List<JSONObject> headers = fetchHeaders(headerPeer, localHead.getString("tip_hash"), difficulty, difficultyVersion);
+            if (headers == null) {
+                state = "diverged";
+                return false;
+            }
+
+            // Bodies
+            state = "bodies";
+            downloadBodies(headerPeer, headers);
+
+            state = "done";
+            logger.info("Header sync finished at height {}", localNode.getBlockchainHeadJSON().getInt("height"));
+            return true;
+        } catch (Exception e) {
+            state = "failed";
+            throw e;
+        } finally {
+            finishedAt = System.currentTimeMillis();
+            running.set(false);
+        }
+    }
+
+    // ( header chain above our tip, or null if it does not link to our tip )
+    private List<JSONObject> fetchHeaders(RemotePeer peer, String tipHash, int difficulty, int difficultyVersion) throws Exception {
+        List<JSONObject> headers = new ArrayList<>();
+        String previousHash = tipHash;
+
+        while (startHeight + headers.size() < targetHeight) {
+            JSONObject data = new JSONObject();
+            data.put("from_height", startHeight + headers.size());
+            data.put("max_headers", HEADERS_PER_REQUEST);
+
+            JSONArray JSONHeaders = networkManager.sendRequest(peer, "request_header_chain", data).getJSONArray("headers");
+            if (JSONHeaders.isEmpty()) {
+                break;
+            }
+
+            for (Object object : JSONHeaders) {
+                JSONObject header = (JSONObject) object;
+
+                if (!header.getString("previousHash").equals(previousHash)) {
+                    if (headers.isEmpty()) {
+                        return null; // Diverged below our tip
+                    }
+                    throw new InvalidException("Header chain broken at height " + (startHeight + headers.size()));
+                }
+
+                if (!ProofOfWork.meetsDifficulty(header.getString("hash"), difficulty, difficultyVersion)) {
+                    throw new InvalidException("Header without proof of work at height " + (startHeight + headers.size()));
+                }
+
+                headers.add(header);
+                previousHash = header.getString("hash");
+            }
+            headersFetched.set(headers.size());
+        }
+
+        targetHeight = startHeight + headers.size();
+        return headers;
+    }
+
+    private void downloadBodies(RemotePeer headerPeer, List<JSONObject> headers) throws Exception {
+        List<RemotePeer> bodyPeers = new ArrayList<>(networkManager.getPeerHealth().selectPeers(MAX_BODY_PEERS));
+        if (!bodyPeers.contains(headerPeer)) {
+            bodyPeers.add(0, headerPeer);
+        }
+
+        ExecutorService fetchers = Executors.newFixedThreadPool(Math.min(bodyPeers.size(), MAX_BODY_PEERS), runnable -> {
+            Thread thread = new Thread(runnable, "HeaderSync-Fetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            // Request ranges in a window ahead of the next range to apply, spread across the peers
+            int rangeCount = (headers.size() + BLOCKS_PER_RANGE - 1) / BLOCKS_PER_RANGE;
+            Deque<CompletableFuture<List<Block>>> inFlight = new ArrayDeque<>();
+            int nextRange = 0;
+
+            // Apply ranges in chain order as they arrive, requesting the next range as each one is applied
+            while (nextRange < rangeCount || !inFlight.isEmpty()) {
+                while (nextRange < rangeCount && inFlight.size() < MAX_RANGES_IN_FLIGHT) {
+                    int rangeOffset = nextRange * BLOCKS_PER_RANGE;
+                    RemotePeer peer = bodyPeers.get(nextRange % bodyPeers.size());
+                    inFlight.addLast(CompletableFuture.supplyAsync(() -> fetchRange(peer, headerPeer, headers, rangeOffset), fetchers));
+                    nextRange++;
+                }
+
+                List<Block> blocks;
+                try {
+                    blocks = inFlight.pollFirst().join();
+                } catch (CompletionException e) {
+                    throw new InvalidException("Unable to fetch block range", e.getCause());
+                }
+
+                int added = localNode.handleNetworkBlocks(blocks);
+                blocksApplied.addAndGet(added);
+                if (added < blocks.size()) {
+                    throw new InvalidException("Synced block rejected by blockchain");
+                }
+            }
+        } finally {
+            fetchers.shutdownNow();
+        }
+    }
+
+    // ( fetches one range of bodies, retrying with the header peer if another peer fails )
+    private List<Block> fetchRange(RemotePeer peer, RemotePeer fallbackPeer, List<JSONObject> headers, int offset) {
+        try {
+            return fetchRangeFrom(peer, headers, offset);
+        } catch (Exception e) {
+            if (peer.equals(fallbackPeer)) {
+                throw new CompletionException(e);
+            }
+            logger.warn("Block range from {}:{} failed ( {} ), retrying with {}:{}", peer.getHost(), peer.getPort(), e.getMessage(), fallbackPeer.getHost(), fallbackPeer.getPort());
+        }
+
+        try {
+            return fetchRangeFrom(fallbackPeer, headers, offset);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    // ( requests one range of bodies and checks each one against its header )
+    private List<Block> fetchRangeFrom(RemotePeer peer, List<JSONObject> headers, int offset) throws Exception {
+        int count = Math.min(BLOCKS_PER_RANGE, headers.size() - offset);
+        String previousHash = headers.get(offset).getString("previousHash");
+
+        JSONObject data = new JSONObject();
+        data.put("from_height", startHeight + offset);
+        data.put("previous_hash", previousHash);
+        data.put("max_blocks", count);
+
+        List<Block> blocks = BlockchainParser.JSONToChain(networkManager.sendRequest(peer, "request_blocks_from", data).getJSONArray("blocks"));
+
+        if (blocks.size() != count) {
+            throw new InvalidException("Expected " + count + " blocks but received " + blocks.size());
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (!blocks.get(i).getHash().equals(headers.get(offset + i).getString("hash"))) {
+                throw new InvalidException("Block body does not match header at height " + (startHeight + offset + i));
+            }
+        }
+
+        blocksFetched.addAndGet(count);
+        return blocks;
+    }
+
+}
@@ -2,36 +2,49 @@ package app.resources.network;
 
 // Imports
 
-import app.resources.JSONParsers.NetworkParser;
-import app.resources.NetworkManager;
 import app.resources.exceptions.ArchivedException;
 import app.resources.exceptions.OverflowException;
 import app.resources.network.resources.RemotePeer;
-import org.json.JSONObject;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 
+/*
+Peers this node gossips with, indexed by host:port and by public key.
+
+Lookups are constant time and lock free. Adding and removing update both indexes together, so they are synchronised.
+addPeer refuses a new public key at a known address. A peer that regenerated its keys is only moved to the new key by replacePeer,
+once the address has been seen to answer with it ( see NetworkManager.confirmPeerAddress ).
+ */
 public class KnownPeers {
     // Fields
-    private final Set<RemotePeer> knownPeers;
+    private final Map<String, RemotePeer> peersByAddress; // host:port -> peer
+    private final Map<String, RemotePeer> peersByPublicKey;
     private final int maxPeers;
 
     // Load new known peers list
     public KnownPeers() {
-         this.knownPeers = new HashSet<>();
-         this.maxPeers = 8;
+        this(new HashSet<>(), 8);
     }
 
     // Load existing known peers list
     public KnownPeers(Set<RemotePeer> knownPeers,  int maxPeers) {
-        this.knownPeers = knownPeers;
+        this.peersByAddress = new ConcurrentHashMap<>();
+        this.peersByPublicKey = new ConcurrentHashMap<>();
         this.maxPeers = maxPeers;
+
+        for (RemotePeer peer : knownPeers) {
+            index(peer);
+        }
     }
 
     // Getter
+
+    // ( snapshot of the current peers )
     public Set<RemotePeer> getKnownPeers() {
-        return knownPeers;
+        return new HashSet<>(peersByAddress.values());
     }
 
     public int getMaxPeers() {
@@ -39,48 +52,97 @@ public class KnownPeers {
     }
 
     public int getSize() {
-        return knownPeers.size();
+        return peersByAddress.size();
     }
 
     public boolean isFull() {
-        return knownPeers.size() == maxPeers;
+        return peersByAddress.size() >= maxPeers;
+    }
+
+    // ( null if no peer is known at that address )
+    public RemotePeer getPeerByAddress(String host, int port) {
+        return peersByAddress.get(host + ":" + port);
+    }
+
+    // ( null if no peer is known with that key )
+    public RemotePeer getPeerByPublicKey(String publicKey) {
+        return peersByPublicKey.get(publicKey);
     }
 
     // Methods
-    public void addPeer(RemotePeer node) throws ArchivedException, OverflowException {
-        if (knownPeers.contains(node)) {
+    public synchronized void addPeer(RemotePeer node) throws ArchivedException, OverflowException {
+        if (containsPeer(node)) {
             throw new ArchivedException("Peer is already in known peers");
         }
 
+        if (peersByAddress.containsKey(node.getAddress())) {
+            throw new ArchivedException("Another peer is known at " + node.getAddress());
+        }
+
         if (isFull()) {
             throw new OverflowException("Known peers is full");
         }
 
-        knownPeers.add(node);
+        index(node);
+    }
+
+    // ( only for a new key whose address has been confirmed - replaces the peer known at that address, if any )
+    public synchronized void replacePeer(RemotePeer node) throws OverflowException {
+        RemotePeer previous = peersByAddress.get(node.getAddress());
+        if (previous == null && isFull()) {
+            throw new OverflowException("Known peers is full");
+        }
+
+        if (previous != null) {
+            peersByPublicKey.remove(previous.getPublicKey(), previous);
+        }
+        index(node);
     }
 
-    public boolean removePeer(RemotePeer node) {
-        return knownPeers.remove(node);
+    public synchronized boolean removePeer(RemotePeer node) {
+        if (!peersByAddress.remove(node.getAddress(), node)) {
+            return false;
+        }
+        peersByPublicKey.remove(node.getPublicKey(), node);
+        return true;
     }
 
     public boolean containsPeer(RemotePeer node) {
-        for (RemotePeer remotePeer : knownPeers) {
-            if (remotePeer.equals(node)) {
-                return true;
-            }
-        }
-        return false;
+        return node.equals(peersByAddress.get(node.getAddress()));
     }
 
+    // ( up to 'count' distinct peers chosen uniformly at random, by reservoir sampling )
     public Set<RemotePeer> getRandomPeers(int count) {
-        if (count > getSize()) {
-            count = getSize();
+        if (count <= 0) {
+            return new HashSet<>();
+        }
+
+        Random random = ThreadLocalRandom.current();
+        RemotePeer[] reservoir = new RemotePeer[count];
+        int seen = 0;
+
+        for (RemotePeer peer : peersByAddress.values()) {
+            if (seen < count) {
+                reservoir[seen] = peer;
+            } else {
+                int slot = random.nextInt(seen + 1);
+                if (slot < count) {
+                    reservoir[slot] = peer;
+                }
+            }
+            seen++;
         }
 
-        List<RemotePeer> peersList = new ArrayList<>(getKnownPeers());
-        Collections.shuffle(peersList); // randomize order
-        return new HashSet<>(peersList.subList(0, count));
+        Set<RemotePeer> peers = new HashSet<>();
+        for (int i = 0; i < Math.min(seen, count); i++) {
+            peers.add(reservoir[i]);
+        }
+        return peers;
     }
 
+    private void index(RemotePeer peer) {
+        peersByAddress.put(peer.getAddress(), peer);
+        peersByPublicKey.put(peer.getPublicKey(), peer);
+    }
 
-}
\ No newline at end of file
+}
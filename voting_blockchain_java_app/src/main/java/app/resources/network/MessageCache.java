@@ -1,20 +1,51 @@
 package app.resources.network;
 
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
+/*
+Hashes of messages already seen, so duplicates are not handled or relayed again.
+
+Lookups are constant time and safe from any receiver thread. Hashes leave the cache oldest first, once it holds more than
+max_length hashes or once a hash is older than the time to live.
+ */
 public class MessageCache {
-    private final Queue<String> hashes;
+    public static final int DEFAULT_MAX_LENGTH = 100_000;
+    public static final int LEGACY_MAX_LENGTH = 100; // ( fixed capacity of caches persisted before it was raised - see Persistence )
+    private static final long DEFAULT_TTL = 10 * 60 * 1000; // ms
+
+    private final Map<String, Long> hashes; // hash -> time added
+    private final Queue<String> order; // ( oldest first )
     private final int max_length;
+    private final long ttl;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
 
     public MessageCache() {
-        this.hashes = new LinkedList<>();
-        this.max_length = 100;
+        this(new LinkedList<>(), DEFAULT_MAX_LENGTH, DEFAULT_TTL);
     }
 
     public MessageCache(Queue<String> hashes, int max_length) {
-        this.hashes = hashes;
+        this(hashes, max_length, DEFAULT_TTL);
+    }
+
+    public MessageCache(Queue<String> hashes, int max_length, long ttl) {
+        this.hashes = new ConcurrentHashMap<>();
+        this.order = new ConcurrentLinkedQueue<>();
         this.max_length = max_length;
+        this.ttl = ttl;
+
+        // ( loaded hashes get a full time to live )
+        for (String hash : hashes) {
+            addHash(hash);
+        }
     }
 
     // Getters
@@ -22,26 +53,102 @@ public class MessageCache {
         return max_length;
     }
 
+    public long getTtl() {
+        return ttl;
+    }
+
+    public int getSize() {
+        return hashes.size();
+    }
+
+    // ( oldest first )
     public Queue<String> getHashes() {
-        return hashes;
+        Queue<String> snapshot = new LinkedList<>();
+        for (String hash : order) {
+            if (hashes.containsKey(hash)) {
+                snapshot.add(hash);
+            }
+        }
+        return snapshot;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
     }
 
     // Methods
     public boolean containsHash(String newHash) {
-        for (String hash : hashes) {
-            if (hash.equals(newHash)) {
-                return true;
-            }
+        Long addedAt = hashes.get(newHash);
+        if (addedAt == null || isExpired(addedAt, System.currentTimeMillis())) {
+            misses.incrementAndGet();
+            return false;
         }
 
-        return false;
+        hits.incrementAndGet();
+        return true;
     }
 
     public void addHash(String newHash) {
-        hashes.add(newHash);
-        if (hashes.size() >= max_length) {
-            hashes.remove();
+        addHashIfAbsent(newHash);
+    }
+
+    // ( returns false if the hash was already in the cache - atomic, so only one of several threads adding a hash sees true )
+    public boolean addHashIfAbsent(String newHash) {
+        long now = System.currentTimeMillis();
+
+        Long addedAt = hashes.putIfAbsent(newHash, now);
+        if (addedAt != null) {
+            if (!isExpired(addedAt, now) || !hashes.replace(newHash, addedAt, now)) {
+                return false;
+            }
+            // ( an expired hash seen again counts as new - it moves to the back of the queue )
+            order.remove(newHash);
         }
+        order.add(newHash);
+
+        removeOldest(now);
+        return true;
+    }
+
+    // ( drops hashes from the front of the queue while the cache is over capacity or they have expired )
+    private void removeOldest(long now) {
+        String oldest;
+        while ((oldest = order.peek()) != null) {
+            Long addedAt = hashes.get(oldest);
+
+            boolean overCapacity = hashes.size() > max_length;
+            boolean expired = addedAt == null || isExpired(addedAt, now);
+            if (!overCapacity && !expired) {
+                return;
+            }
+
+            if (!order.remove(oldest)) {
+                continue; // ( removed by another thread )
+            }
+            if (addedAt != null && hashes.remove(oldest, addedAt)) {
+                if (overCapacity) {
+                    evictions.incrementAndGet();
+                } else {
+                    expirations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private boolean isExpired(long addedAt, long now) {
+        return now - addedAt > ttl;
     }
 
 }
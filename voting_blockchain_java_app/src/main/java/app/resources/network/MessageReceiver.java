@@ -2,76 +2,489 @@ package app.resources.network;
 
 import app.resources.NetworkManager;
 
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*; // SelectionKey, Selector, ServerSocketChannel, SocketChannel
+import java.nio.charset.StandardCharsets;
+import java.util.*; // ArrayDeque, Deque, HashSet, Iterator, Set
+import java.util.concurrent.*; // ConcurrentLinkedQueue, LinkedBlockingQueue, RejectedExecutionException, Semaphore, ThreadPoolExecutor, TimeUnit
+import java.util.concurrent.atomic.AtomicInteger;
 
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
+/*
+Accepts peer connections on one selector thread and hands each message line to a bounded pool of workers.
 
+    - every connection can carry many messages, each answered with the request_id it was sent with ( see PeerConnection )
+    - connections start as JSON lines and switch to binary frames if the first line is a wire_hello offering a supported version ( see WireCodec )
+    - when every worker is busy and the queue is full, reading from the connection is paused until a worker frees up ( backpressure )
+    - connections with nothing in flight that send nothing for READ_TIMEOUT are closed
+ */
 public class MessageReceiver implements Runnable {
+    private static final int WORKER_QUEUE_SIZE = 256; // Messages waiting for a worker before reads are paused
+    private static final long READ_TIMEOUT = 120_000; // ms ( longer than MessageSender's idle timeout )
+    private static final long SELECT_TIMEOUT = 1_000; // ms ( how often read timeouts are checked )
+    private static final int MAX_MESSAGE_SIZE = 16 * 1024 * 1024; // bytes
+
+    // Fields
     private final Logger logger;
     private final int port;
     private final NetworkManager networkManager;
 
+    private final int workers;
+    private final ThreadPoolExecutor workerPool;
+    private final Semaphore workerSlots; // ( one per worker and queue slot - bounds the pool, whose own queue is unbounded )
+
+    private Selector selector;
+    private final Set<Connection> connections = new HashSet<>(); // ( selector thread only )
+    private final Queue<Connection> ready = new ConcurrentLinkedQueue<>(); // Connections with responses to write or reads to resume
+    private final AtomicInteger pausedConnections = new AtomicInteger();
+    private long lastTimeoutCheck;
+
+    // ( one message read from a connection - a JSON line or a binary frame payload )
+    private static class Incoming {
+        private final String line;
+        private final byte[] frame;
+
+        private Incoming(String line, byte[] frame) {
+            this.line = line;
+            this.frame = frame;
+        }
+    }
+
+    // ( state of one accepted connection )
+    private static class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+
+        private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+        private final Deque<Incoming> waitingMessages = new ArrayDeque<>(); // Messages read while the workers were saturated
+
+        // ( binary frames, once agreed with a hello line - see WireCodec )
+        private boolean binary;
+        private boolean firstLine = true;
+        private final byte[] frameHeader = new byte[WireCodec.HEADER_SIZE];
+        private int frameHeaderRead;
+        private byte[] framePayload;
+        private int framePayloadRead;
+        private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private long lastReadAt = System.currentTimeMillis();
+        private boolean paused;
+        private boolean inputClosed;
+        private volatile boolean malformed; // Set by a worker - the connection is closed as the message cannot be answered
+
+        private Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
     public MessageReceiver(int port, NetworkManager networkManager) {
+        this(port, networkManager, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public MessageReceiver(int port, NetworkManager networkManager, int workers) {
         this.logger = LoggerFactory.getLogger(MessageReceiver.class);
 
         this.port = port;
         this.networkManager = networkManager;
+
+        this.workers = workers;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workerPool = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "MessageReceiver-Worker-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.workerSlots = new Semaphore(workers + WORKER_QUEUE_SIZE);
+    }
+
+    // Getters
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getActiveWorkers() {
+        return workerPool.getActiveCount();
+    }
+
+    public int getQueuedMessages() {
+        return workerPool.getQueue().size();
+    }
+
+    public int getPausedConnections() {
+        return pausedConnections.get();
     }
 
     @Override
     public void run() {
-        try(ServerSocket serverSocket = new ServerSocket(port)) {
+        try(
+                Selector selector = Selector.open();
+                ServerSocketChannel serverChannel = ServerSocketChannel.open()
+        ) {
+            this.selector = selector;
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
             logger.info("Message receiver listening on port " + port);
 
             while (true) {
-                Socket clientSocket = serverSocket.accept();
-                new Thread(() -> handleClient(clientSocket)).start();
+                selector.select(SELECT_TIMEOUT);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept(serverChannel);
+                            continue;
+                        }
+
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                        }
+                    } catch (IOException | CancelledKeyException e) {
+                        if (key.attachment() instanceof Connection connection) {
+                            close(connection);
+                        }
+                    }
+                }
+
+                handleReadyConnections();
+                closeTimedOutConnections();
             }
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
+        } finally {
+            workerPool.shutdownNow();
         }
     }
 
-    public void handleClient(Socket clientSocket) {
-        try(
-                BufferedReader reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                PrintWriter writer = new PrintWriter(clientSocket.getOutputStream(), true);
-        ){
-            String messageString;
-            JSONObject message;
+    private void accept(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
 
-            try {
-                messageString = reader.readLine();
-                message = new JSONObject(messageString);
-            } catch (IOException e) {
-                return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+
+        Connection connection = new Connection(channel, key);
+        key.attach(connection);
+        connections.add(connection);
+    }
+
+    private void read(Connection connection) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        int read = connection.channel.read(buffer);
+
+        if (read == -1) {
+            // ( the peer has finished sending - close once its responses are written )
+            connection.inputClosed = true;
+            connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+            closeIfFinished(connection);
+            return;
+        }
+        connection.lastReadAt = System.currentTimeMillis();
+
+        if (!consume(connection, buffer.array(), 0, read)) {
+            close(connection);
+            return;
+        }
+
+        dispatch(connection);
+    }
+
+    // ( splits bytes read into messages - returns false if the connection should be closed )
+    private boolean consume(Connection connection, byte[] bytes, int offset, int length) {
+        if (connection.binary) {
+            return consumeFrames(connection, bytes, offset, length);
+        }
+
+        int end = offset + length;
+        int lineStart = offset;
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+
+            connection.partialLine.write(bytes, lineStart, i - lineStart);
+            String line = connection.partialLine.toString(StandardCharsets.UTF_8);
+            connection.partialLine.reset();
+            lineStart = i + 1;
+
+            if (connection.firstLine) {
+                connection.firstLine = false;
+                if (line.contains(WireCodec.HELLO) && handleHello(connection, line)) {
+                    // ( everything after the hello is framed )
+                    return consumeFrames(connection, bytes, lineStart, end - lineStart);
+                }
+            }
+            connection.waitingMessages.addLast(new Incoming(line, null));
+        }
+        connection.partialLine.write(bytes, lineStart, end - lineStart);
+
+        if (connection.partialLine.size() > MAX_MESSAGE_SIZE) {
+            logger.warn("Message over {} bytes received, closing connection", MAX_MESSAGE_SIZE);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean consumeFrames(Connection connection, byte[] bytes, int offset, int length) {
+        int position = offset;
+        int end = offset + length;
+
+        while (position < end) {
+            // Header
+            if (connection.framePayload == null) {
+                int headerBytes = Math.min(WireCodec.HEADER_SIZE - connection.frameHeaderRead, end - position);
+                System.arraycopy(bytes, position, connection.frameHeader, connection.frameHeaderRead, headerBytes);
+                connection.frameHeaderRead += headerBytes;
+                position += headerBytes;
+
+                if (connection.frameHeaderRead < WireCodec.HEADER_SIZE) {
+                    return true;
+                }
+
+                ByteBuffer header = ByteBuffer.wrap(connection.frameHeader);
+                int version = header.get();
+                int frameLength = header.getInt();
+                if (version != WireCodec.VERSION || frameLength < 0 || frameLength > WireCodec.MAX_FRAME_SIZE) {
+                    logger.warn("Invalid frame ( version {}, length {} ) received, closing connection", version, frameLength);
+                    return false;
+                }
+                connection.framePayload = new byte[frameLength];
+                connection.framePayloadRead = 0;
             }
-            logger.info("New message received");
 
-            JSONObject response;
+            // Payload
+            int payloadBytes = Math.min(connection.framePayload.length - connection.framePayloadRead, end - position);
+            System.arraycopy(bytes, position, connection.framePayload, connection.framePayloadRead, payloadBytes);
+            connection.framePayloadRead += payloadBytes;
+            position += payloadBytes;
 
+            if (connection.framePayloadRead == connection.framePayload.length) {
+                connection.waitingMessages.addLast(new Incoming(null, connection.framePayload));
+                connection.framePayload = null;
+                connection.frameHeaderRead = 0;
+            }
+        }
+        return true;
+    }
+
+    // ( answers a wire_hello line - returns true if the connection switched to binary frames )
+    private boolean handleHello(Connection connection, String line) {
+        JSONObject hello;
+        try {
+            hello = new JSONObject(line);
+        } catch (JSONException e) {
+            return false;
+        }
+        if (!hello.has(WireCodec.HELLO)) {
+            return false;
+        }
+
+        boolean supported = false;
+        JSONArray versions = hello.getJSONObject(WireCodec.HELLO).optJSONArray("versions");
+        for (int i = 0; versions != null && i < versions.length(); i++) {
+            if (versions.optInt(i) == WireCodec.VERSION) {
+                supported = true;
+            }
+        }
+
+        JSONObject response = new JSONObject();
+        response.put(WireCodec.HELLO_RESPONSE, supported ? WireCodec.VERSION : 0);
+        connection.responses.add(ByteBuffer.wrap((response + "\n").getBytes(StandardCharsets.UTF_8)));
+        connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+
+        connection.binary = supported;
+        return supported;
+    }
+
+    // ( hands waiting messages to the workers, pausing reads if they are saturated )
+    private void dispatch(Connection connection) {
+        while (!connection.waitingMessages.isEmpty()) {
+            if (!workerSlots.tryAcquire()) {
+                pause(connection);
+                return;
+            }
+
+            Incoming incoming = connection.waitingMessages.pollFirst();
+            connection.inFlight.incrementAndGet();
             try {
-                response = networkManager.handleIncomingMessage(message);
-            } catch (Exception e) {
+                workerPool.execute(() -> {
+                    try {
+                        handleMessage(connection, incoming);
+                    } finally {
+                        connection.inFlight.decrementAndGet();
+                        workerSlots.release();
+                        ready.add(connection);
+                        selector.wakeup();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // ( the message is kept and retried when paused connections are next resumed, rather than ending the selector loop )
+                connection.inFlight.decrementAndGet();
+                workerSlots.release();
+                connection.waitingMessages.addFirst(incoming);
+                logger.warn("Message rejected by the worker pool, pausing reads from connection");
+                pause(connection);
                 return;
             }
+        }
+
+        if (connection.paused) {
+            connection.paused = false;
+            pausedConnections.decrementAndGet();
+            if (!connection.inputClosed) {
+                connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private void pause(Connection connection) {
+        if (!connection.paused) {
+            connection.paused = true;
+            pausedConnections.incrementAndGet();
+            connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+            logger.debug("Workers saturated, pausing reads from connection");
+        }
+    }
+
+    private void write(Connection connection) throws IOException {
+        ByteBuffer response;
+        while ((response = connection.responses.peek()) != null) {
+            connection.channel.write(response);
+            if (response.hasRemaining()) {
+                return; // ( socket buffer full - wait for the next OP_WRITE )
+            }
+            connection.responses.poll();
+        }
 
-            writer.println(response.toString());
-            logger.info("Response sent");
+        connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_WRITE);
+        closeIfFinished(connection);
+    }
 
+    // ( responses finished by workers and paused connections that can be resumed )
+    private void handleReadyConnections() {
+        Set<Connection> readyConnections = new HashSet<>();
+        Connection connection;
+        while ((connection = ready.poll()) != null) {
+            readyConnections.add(connection);
+        }
 
+        for (Connection readyConnection : readyConnections) {
+            if (!readyConnection.key.isValid()) {
+                continue;
+            }
+            if (readyConnection.malformed) {
+                close(readyConnection);
+                continue;
+            }
+            if (!readyConnection.responses.isEmpty()) {
+                readyConnection.key.interestOps(readyConnection.key.interestOps() | SelectionKey.OP_WRITE);
+            }
+            closeIfFinished(readyConnection);
+        }
+
+        // ( a freed worker slot may let any paused connection continue )
+        for (Connection pausedConnection : new ArrayList<>(connections)) {
+            if (pausedConnection.paused && pausedConnection.key.isValid()) {
+                dispatch(pausedConnection);
+            }
+        }
+    }
+
+    private void closeTimedOutConnections() {
+        long now = System.currentTimeMillis();
+        if (now - lastTimeoutCheck < SELECT_TIMEOUT) {
+            return;
+        }
+        lastTimeoutCheck = now;
+
+        for (Connection connection : new ArrayList<>(connections)) {
+            boolean idle = connection.inFlight.get() == 0 && connection.waitingMessages.isEmpty() && connection.responses.isEmpty();
+            if (idle && now - connection.lastReadAt > READ_TIMEOUT) {
+                logger.debug("Closing connection after {}ms without messages", READ_TIMEOUT);
+                close(connection);
+            }
+        }
+    }
+
+    private void closeIfFinished(Connection connection) {
+        if (connection.inputClosed && connection.inFlight.get() == 0 && connection.waitingMessages.isEmpty() && connection.responses.isEmpty()) {
+            close(connection);
+        }
+    }
+
+    private void close(Connection connection) {
+        if (connection.paused) {
+            connection.paused = false;
+            pausedConnections.decrementAndGet();
+        }
+        connections.remove(connection);
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close connection", e);
+        }
+    }
+
+    // ( runs on a worker - the response echoes the message's request_id and is sent in the same format )
+    private void handleMessage(Connection connection, Incoming incoming) {
+        JSONObject message;
+        try {
+            message = incoming.frame != null ? WireCodec.decode(incoming.frame) : new JSONObject(incoming.line);
+        } catch (JSONException | IOException e) {
+            logger.warn("Malformed message received");
+            connection.malformed = true;
+            return;
+        }
+        logger.info("New message received");
+
+        JSONObject response;
+        try {
+            response = networkManager.handleIncomingMessage(message);
         } catch (Exception e) {
-            logger.warn("Failed to accept client message");
+            JSONObject data = new JSONObject();
+            data.put("reason", "Failed to handle message: " + e.getMessage());
+            response = networkManager.constructResponse(message.optString("message_type"), false, data);
+        }
+
+        if (message.has("request_id")) {
+            response.put("request_id", message.get("request_id"));
+        }
+
+        try {
+            byte[] responseBytes = incoming.frame != null ? WireCodec.toFrame(response) : (response + "\n").getBytes(StandardCharsets.UTF_8);
+            connection.responses.add(ByteBuffer.wrap(responseBytes));
+        } catch (IOException e) {
+            logger.warn("Failed to encode response: " + e.getMessage());
+            connection.malformed = true;
+            return;
         }
+        logger.info("Response queued");
     }
 
-}
\ No newline at end of file
+}
@@ -1,35 +1,176 @@
 package app.resources.network;
 
-import app.resources.NetworkManager;
 import org.json.JSONObject;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.net.Socket;
-import java.security.InvalidParameterException;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*; // CompletableFuture, ConcurrentHashMap, ExecutionException, Executors, ScheduledExecutorService, TimeUnit, TimeoutException
 
+/*
+Sends messages to peers over a pool of long-lived connections, one per peer ( host:port ).
+
+    - connections are opened on first use and reused by every later request, several of which can be in flight at once ( see PeerConnection )
+    - connections with nothing in flight are closed after IDLE_TIMEOUT
+    - after a failed connect, further connects to that peer are refused with an exponential backoff
+
+Peers that answer without a request_id ( older nodes ) handle one message per connection, so they are sent each message on its own connection.
+Connections use binary frames when the peer accepts a wire_hello ( see WireCodec ), otherwise JSON lines.
+ */
 public class MessageSender {
-    private static final Logger logger = LoggerFactory.getLogger(MessageSender.class);
+    private static final int CONNECT_TIMEOUT = 5_000; // ms
+    private static final int RESPONSE_TIMEOUT = 30_000; // ms
+    private static final long IDLE_TIMEOUT = 60_000; // ms
+    private static final long MIN_BACKOFF = 500; // ms
+    private static final long MAX_BACKOFF = 30_000; // ms
+    private static final boolean BINARY_WIRE = !System.getProperty("node.wire", "binary").equals("json"); // -Dnode.wire=json keeps every connection on JSON lines
+
+    // Fields
+    private final Logger logger = LoggerFactory.getLogger(MessageSender.class);
 
-    public static JSONObject send(String host, int port, JSONObject message) throws Exception {
-        try (
-                Socket socket = new Socket(host, port);
-                OutputStream out = socket.getOutputStream();
-                PrintWriter writer = new PrintWriter(out, true);
-                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        ) {
-            String messageString = message.toString();
-            writer.println(messageString);
-            logger.info("Message sent to " + host + ":" + port);
+    private final Map<String, PeerConnection> connections = new ConcurrentHashMap<>(); // host:port -> connection
+    private final Map<String, Object> connectLocks = new ConcurrentHashMap<>();
+    private final Map<String, Backoff> backoffs = new ConcurrentHashMap<>();
+    private final Set<String> legacyPeers = ConcurrentHashMap.newKeySet();
+    private final Set<String> jsonOnlyPeers = ConcurrentHashMap.newKeySet(); // Peers that close the connection on a wire_hello
 
-            return new JSONObject(reader.readLine());
+    private final ScheduledExecutorService idleReaper;
 
+    // ( reconnect backoff of one peer )
+    private static class Backoff {
+        private int failures;
+        private long nextAttemptAt;
+
+        private void failed() {
+            failures++;
+            long delay = Math.min(MAX_BACKOFF, MIN_BACKOFF << Math.min(failures - 1, 16));
+            nextAttemptAt = System.currentTimeMillis() + delay;
+        }
+
+        private long remaining() {
+            return Math.max(0, nextAttemptAt - System.currentTimeMillis());
         }
     }
-}
 
+    // Initialisation
+    public MessageSender() {
+        this.idleReaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MessageSender-IdleReaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        idleReaper.scheduleAtFixedRate(this::closeIdleConnections, IDLE_TIMEOUT, IDLE_TIMEOUT / 4, TimeUnit.MILLISECONDS);
+    }
+
+    // Getters
+    public int getOpenConnections() {
+        return connections.size();
+    }
+
+    // Methods
+    public JSONObject send(String host, int port, JSONObject message) throws Exception {
+        String key = host + ":" + port;
+
+        for (int attempt = 0; ; attempt++) {
+            boolean oneShot = legacyPeers.contains(key);
+            PeerConnection connection = oneShot ? connect(key, host, port) : connectionTo(key, host, port);
+            CompletableFuture<JSONObject> response = connection.send(message);
+
+            try {
+                JSONObject responseMessage = response.get(RESPONSE_TIMEOUT, TimeUnit.MILLISECONDS);
+                logger.info("Message sent to " + host + ":" + port);
+                return responseMessage;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof PeerConnection.ConnectionClosedException) {
+                    // ( an older peer answered another request and closed - send this one on its own connection )
+                    if (connection.isLegacy() && !oneShot) {
+                        legacyPeers.add(key);
+                        continue;
+                    }
+                    // ( the peer closed a pooled connection before answering - retry once on a new connection )
+                    if (attempt == 0) {
+                        continue;
+                    }
+                }
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } catch (TimeoutException e) {
+                connection.cancel(response);
+                throw new IOException("No response from " + key + " within " + RESPONSE_TIMEOUT + "ms");
+            } finally {
+                if (oneShot) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    public void close() {
+        idleReaper.shutdownNow();
+        for (PeerConnection connection : connections.values()) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    // ( open pooled connection to the peer, connecting if there is none )
+    private PeerConnection connectionTo(String key, String host, int port) throws IOException {
+        PeerConnection connection = connections.get(key);
+        if (connection != null && connection.isOpen()) {
+            return connection;
+        }
+
+        synchronized (connectLocks.computeIfAbsent(key, k -> new Object())) {
+            connection = connections.get(key);
+            if (connection != null && connection.isOpen()) {
+                return connection;
+            }
+
+            connection = connect(key, host, port);
+            connections.put(key, connection);
+            return connection;
+        }
+    }
+
+    // ( new connection to the peer, unless it is in backoff after a failed connect )
+    private PeerConnection connect(String key, String host, int port) throws IOException {
+        Backoff backoff = backoffs.computeIfAbsent(key, k -> new Backoff());
+        synchronized (backoff) {
+            long remaining = backoff.remaining();
+            if (remaining > 0) {
+                throw new IOException("Reconnecting to " + key + " in " + remaining + "ms");
+            }
+        }
+
+        PeerConnection connection;
+        try {
+            try {
+                connection = new PeerConnection(host, port, CONNECT_TIMEOUT, BINARY_WIRE && !jsonOnlyPeers.contains(key));
+            } catch (PeerConnection.HelloRejectedException e) {
+                logger.info("{} does not support binary frames, using JSON", key);
+                jsonOnlyPeers.add(key);
+                connection = new PeerConnection(host, port, CONNECT_TIMEOUT, false);
+            }
+        } catch (IOException e) {
+            synchronized (backoff) {
+                backoff.failed();
+            }
+            throw e;
+        }
+
+        backoffs.remove(key);
+        return connection;
+    }
+
+    private void closeIdleConnections() {
+        for (Map.Entry<String, PeerConnection> entry : connections.entrySet()) {
+            PeerConnection connection = entry.getValue();
+            if (!connection.isOpen() || connection.isIdle(IDLE_TIMEOUT)) {
+                connection.close();
+                connections.remove(entry.getKey(), connection);
+            }
+        }
+    }
+}
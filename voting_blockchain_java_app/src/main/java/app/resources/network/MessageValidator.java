@@ -0,0 +1,164 @@
+package app.resources.network;
+
+import app.resources.JSONParsers.NetworkParser;
+import app.resources.network.resources.RemotePeer;
+import app.resources.util.Cryptography;
+
+import org.json.JSONObject;
+
+import java.security.InvalidParameterException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Checks received messages before they are handled. Stages run cheapest first, so most messages ( under gossip, mostly duplicates )
+are dropped before any parsing or cryptography:
+    1. format - all message fields exist
+    2. type - message type is recognised
+    3. duplicate - hash not already in the message cache
+    4. known peer - the origin is known ( not checked for request_connection )
+    5. signature - hash matches the data ( SHA-256 ) and the origin signature is valid ( RSA )
+The hash is only added to the cache once every stage has passed, so an invalid message cannot block a valid one.
+
+relayed_by is not covered by the origin hash or signature, so it is never trusted - a relayed send message is only accepted
+when the origin's public key belongs to a known peer ( its address may differ, as the message did not come from it directly ).
+Relaying therefore costs one RSA verify per hop and no signing.
+ */
+public class MessageValidator {
+    public static final Set<String> MESSAGE_TYPES = Set.of(
+            "send_vote", "send_votes", "send_voter", "send_block",
+            "request_blockchain", "request_connection", "request_headers", "request_blocks_from", "request_header_chain",
+            "request_vote_digest", "request_votes", "ping"
+    );
+
+    // Fields
+    private final KnownPeers knownPeers;
+    private final MessageCache messageCache;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong formatRejections = new AtomicLong();
+    private final AtomicLong typeRejections = new AtomicLong();
+    private final AtomicLong duplicateRejections = new AtomicLong();
+    private final AtomicLong unknownPeerRejections = new AtomicLong();
+    private final AtomicLong signatureRejections = new AtomicLong();
+
+    // Initialisation
+    public MessageValidator(KnownPeers knownPeers, MessageCache messageCache) {
+        this.knownPeers = knownPeers;
+        this.messageCache = messageCache;
+    }
+
+    // Getters
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getFormatRejections() {
+        return formatRejections.get();
+    }
+
+    public long getTypeRejections() {
+        return typeRejections.get();
+    }
+
+    public long getDuplicateRejections() {
+        return duplicateRejections.get();
+    }
+
+    public long getUnknownPeerRejections() {
+        return unknownPeerRejections.get();
+    }
+
+    public long getSignatureRejections() {
+        return signatureRejections.get();
+    }
+
+    // Methods
+    public void validate(JSONObject message) throws InvalidParameterException {
+        JSONObject sender;
+        String message_type;
+        JSONObject data;
+        String hash;
+        String signature;
+
+        // 1. All message fields exist
+        try {
+            sender = message.getJSONObject("sender");
+            message_type = message.getString("message_type");
+            data = message.getJSONObject("data");
+            hash = message.getString("hash");
+            signature = message.getString("signature");
+        } catch (Exception e) {
+            throw reject(formatRejections, "Invalid message format: " + e.getMessage());
+        }
+
+        // 2. Message has valid message type
+        if (!MESSAGE_TYPES.contains(message_type)) {
+            throw reject(typeRejections, "Invalid message_type " + message_type);
+        }
+
+        // 3. Message not already seen
+        if (messageCache.containsHash(hash)) {
+            throw reject(duplicateRejections, "Message already seen");
+        }
+
+        // 4. Origin in knownPeers ( unless requesting connection )
+        RemotePeer senderPeer;
+        try {
+            senderPeer = NetworkParser.JSONToRemotePeer(sender);
+        } catch (Exception e) {
+            throw reject(formatRejections, "Malformed sender field");
+        }
+
+        // ( only send messages are relayed )
+        boolean relayed = message.has("relayed_by");
+        if (relayed && !message_type.startsWith("send_")) {
+            throw reject(formatRejections, "Only send messages can be relayed");
+        }
+        if (relayed && message.optJSONObject("relayed_by") == null) {
+            throw reject(formatRejections, "Malformed relayed_by field");
+        }
+
+        if (!message_type.equals("request_connection")) {
+            boolean knownOrigin = relayed ? knownPeers.getPeerByPublicKey(senderPeer.getPublicKey()) != null : knownPeers.containsPeer(senderPeer);
+            if (!knownOrigin) {
+                throw reject(unknownPeerRejections, "Sender not in known peer list");
+            }
+        }
+
+        // 5. Message hash matches data ( otherwise a copy with a new hash would pass the cache ) and has a valid signature
+        String dataString = data.toString();
+        try {
+            if (!Cryptography.hash(dataString).equals(hash)) {
+                throw reject(signatureRejections, "Hash does not match data");
+            }
+        } catch (InvalidParameterException e) {
+            throw e;
+        } catch (Exception e) {
+            throw reject(signatureRejections, "Unable to hash data");
+        }
+
+        boolean validSignature;
+        try {
+            validSignature = Cryptography.verify(dataString, signature, senderPeer.getPublicKey());
+        } catch (Exception e) {
+            throw reject(signatureRejections, "Invalid signature: " + e.getMessage());
+        }
+        if (!validSignature) {
+            throw reject(signatureRejections, "Invalid signature");
+        }
+
+        // ( atomic, so only one of two copies arriving together is handled )
+        if (!messageCache.addHashIfAbsent(hash)) {
+            throw reject(duplicateRejections, "Message already seen");
+        }
+
+        accepted.incrementAndGet();
+    }
+
+    // Helper for validate()
+    private InvalidParameterException reject(AtomicLong stageRejections, String reason) {
+        stageRejections.incrementAndGet();
+        return new InvalidParameterException(reason);
+    }
+}
@@ -0,0 +1,253 @@
+package app.resources.network;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*; // BufferedInputStream, BufferedOutputStream, ByteArrayOutputStream, DataInputStream, InputStream, IOException, OutputStream
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+One long-lived connection to a peer.
+
+Each request is written as a line tagged with a request_id, and a reader thread matches each response line back to its
+request by the echoed request_id, so several requests can be in flight on the socket at once.
+Peers that do not echo request_id answer a single request and close, so an untagged response completes the oldest request.
+
+When asked to, the connection opens with a wire_hello line and uses WireCodec binary frames if the peer agrees, otherwise JSON lines.
+ */
+class PeerConnection {
+    // ( failure given to requests still waiting when the connection closes - safe to retry on a new connection )
+    static class ConnectionClosedException extends IOException {
+        ConnectionClosedException(String message) {
+            super(message);
+        }
+    }
+
+    // ( the peer closed the connection or did not answer the wire_hello - it should be reconnected without one )
+    static class HelloRejectedException extends IOException {
+        HelloRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    // Fields
+    private final Logger logger = LoggerFactory.getLogger(PeerConnection.class);
+
+    private final String host;
+    private final int port;
+
+    private final Socket socket;
+    private final OutputStream out;
+    private final InputStream in;
+    private final boolean binary; // WireCodec frames rather than JSON lines
+
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final ConcurrentSkipListMap<Long, CompletableFuture<JSONObject>> pending = new ConcurrentSkipListMap<>(); // ( oldest request first )
+
+    private volatile boolean closed;
+    private volatile boolean legacy; // Peer answered without a request_id
+    private volatile long lastUsed;
+
+    // Initialisation ( connects, agrees the wire format and starts reading responses )
+    PeerConnection(String host, int port, int connectTimeout, boolean offerBinary) throws IOException {
+        this.host = host;
+        this.port = port;
+
+        this.socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), connectTimeout);
+        socket.setTcpNoDelay(true);
+        socket.setKeepAlive(true);
+
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.binary = offerBinary && negotiateBinary(connectTimeout);
+        this.lastUsed = System.currentTimeMillis();
+
+        Thread readerThread = new Thread(this::readResponses, "PeerConnection-" + host + ":" + port);
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    // Getters
+    boolean isOpen() {
+        return !closed;
+    }
+
+    boolean isBinary() {
+        return binary;
+    }
+
+    // ( true once the peer has answered without a request_id - it will close the connection after each response )
+    boolean isLegacy() {
+        return legacy;
+    }
+
+    // ( true if no request is waiting and nothing has been sent for 'idleTimeout' milliseconds )
+    boolean isIdle(long idleTimeout) {
+        return pending.isEmpty() && System.currentTimeMillis() - lastUsed > idleTimeout;
+    }
+
+    // Methods
+
+    // ( writes the message with a new request_id - the message itself is not modified, as it may be sent to several peers )
+    CompletableFuture<JSONObject> send(JSONObject message) {
+        JSONObject envelope = new JSONObject(message, JSONObject.getNames(message));
+        CompletableFuture<JSONObject> response = new CompletableFuture<>();
+        lastUsed = System.currentTimeMillis();
+
+        // ( ids are taken in write order, so the oldest request is also the first one written )
+        synchronized (out) {
+            long requestId = nextRequestId.incrementAndGet();
+            envelope.put("request_id", requestId);
+
+            byte[] bytes;
+            try {
+                bytes = binary ? WireCodec.toFrame(envelope) : (envelope + "\n").getBytes(StandardCharsets.UTF_8);
+                // ( only responses are split over continued frames - see WireCodec )
+                if (binary && bytes.length > WireCodec.HEADER_SIZE + WireCodec.MAX_FRAME_SIZE) {
+                    throw new IOException("Request of " + bytes.length + " bytes exceeds frame limit");
+                }
+            } catch (IOException e) {
+                response.completeExceptionally(e);
+                return response;
+            }
+
+            pending.put(requestId, response);
+            if (closed) {
+                pending.remove(requestId);
+                response.completeExceptionally(new ConnectionClosedException("Connection to " + host + ":" + port + " is closed"));
+                return response;
+            }
+
+            try {
+                out.write(bytes);
+                out.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+        return response;
+    }
+
+    // ( stops waiting for a request that timed out )
+    void cancel(CompletableFuture<JSONObject> response) {
+        pending.values().remove(response);
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close connection to {}:{}", host, port, e);
+        }
+
+        for (Map.Entry<Long, CompletableFuture<JSONObject>> entry : pending.entrySet()) {
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().completeExceptionally(new ConnectionClosedException("Connection to " + host + ":" + port + " closed before response"));
+            }
+        }
+    }
+
+    // ( sends a wire_hello and returns true if the peer agreed to binary frames )
+    private boolean negotiateBinary(int timeout) throws IOException {
+        JSONObject hello = new JSONObject();
+        hello.put(WireCodec.HELLO, new JSONObject().put("versions", new JSONArray().put(WireCodec.VERSION)));
+        out.write((hello + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+
+        String responseString;
+        socket.setSoTimeout(timeout);
+        try {
+            responseString = readLine();
+        } catch (SocketTimeoutException e) {
+            socket.close();
+            throw new HelloRejectedException(host + ":" + port + " did not answer wire_hello");
+        } finally {
+            if (!socket.isClosed()) {
+                socket.setSoTimeout(0);
+            }
+        }
+
+        if (responseString == null) {
+            socket.close();
+            throw new HelloRejectedException(host + ":" + port + " closed the connection on wire_hello");
+        }
+
+        // ( peers without binary support reject the hello as a malformed message )
+        try {
+            return new JSONObject(responseString).optInt(WireCodec.HELLO_RESPONSE) == WireCodec.VERSION;
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    // ( next line from the connection, or null at end of stream )
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                return null;
+            }
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    // ( next response, or null at end of stream )
+    private JSONObject readResponse(DataInputStream frames) throws IOException {
+        if (binary) {
+            return WireCodec.readFrame(frames);
+        }
+
+        String responseString = readLine();
+        return responseString == null ? null : new JSONObject(responseString);
+    }
+
+    private void readResponses() {
+        try {
+            DataInputStream frames = new DataInputStream(in);
+            JSONObject response;
+            while ((response = readResponse(frames)) != null) {
+                lastUsed = System.currentTimeMillis();
+
+                CompletableFuture<JSONObject> request;
+                if (response.has("request_id")) {
+                    request = pending.remove(response.getLong("request_id"));
+                } else {
+                    legacy = true;
+                    Map.Entry<Long, CompletableFuture<JSONObject>> oldest = pending.pollFirstEntry();
+                    request = oldest == null ? null : oldest.getValue();
+                }
+
+                if (request == null) {
+                    logger.debug("Unmatched response from {}:{}", host, port);
+                    continue;
+                }
+                request.complete(response);
+            }
+        } catch (Exception e) {
+            if (!closed) {
+                logger.debug("Connection to {}:{} failed - {}", host, port, e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+}
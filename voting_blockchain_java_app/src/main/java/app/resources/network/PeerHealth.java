@@ -0,0 +1,180 @@
+package app.resources.network;
+
+import app.resources.network.resources.PeerStats;
+import app.resources.network.resources.RemotePeer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*; // ArrayList, Collection, List, Map, PriorityQueue
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/*
+Tracks how each known peer has been answering ( see PeerStats ) and uses it to choose who to send to.
+
+    - peers are scored by average round trip time and decayed error rate, and chosen at random weighted by that score
+    - a peer with no answers yet scores as the average answering peer does, so new peers are tried as often as typical ones
+    - a peer failing FAILURES_BEFORE_BENCH times in a row is benched ( skipped by selectPeers ) for a growing period
+    - a peer failing FAILURES_BEFORE_EVICTION times in a row that has not answered for EVICT_AFTER_UNSEEN is removed from known peers
+Benched peers are still pinged, so a peer that comes back is un-benched by its first answer.
+ */
+public class PeerHealth {
+    private static final int FAILURES_BEFORE_BENCH = 3;
+    private static final int FAILURES_BEFORE_EVICTION = 10;
+    private static final long MIN_BENCH = 30_000; // ms
+    private static final long MAX_BENCH = 10 * 60_000; // ms
+    private static final long EVICT_AFTER_UNSEEN = 30 * 60_000; // ms
+
+    private static final double RTT_REFERENCE = 100; // ms - a peer answering in this time scores 0.5 for latency
+    private static final double DEFAULT_NEUTRAL_SCORE = 0.5; // Score of a peer with no answers yet, when no peer has answered
+    private static final double MIN_SCORE = 0.01; // ( every peer keeps some chance of being chosen )
+
+    // Fields
+    private final Logger logger = LoggerFactory.getLogger(PeerHealth.class);
+
+    private final KnownPeers knownPeers;
+    private final Map<String, PeerStats> stats = new ConcurrentHashMap<>(); // host:port -> stats
+
+    // Initialisation
+    public PeerHealth(KnownPeers knownPeers) {
+        this.knownPeers = knownPeers;
+    }
+
+    // Getters
+    public PeerStats getStats(RemotePeer peer) {
+        return stats.computeIfAbsent(peer.getAddress(), PeerStats::new);
+    }
+
+    // ( stats of every known peer )
+    public List<PeerStats> getKnownPeerStats() {
+        List<PeerStats> knownPeerStats = new ArrayList<>();
+        for (RemotePeer peer : knownPeers.getKnownPeers()) {
+            knownPeerStats.add(getStats(peer));
+        }
+        return knownPeerStats;
+    }
+
+    // ( in (0, 1] - higher for fast, reliable peers )
+    public double getScore(RemotePeer peer) {
+        return getScore(peer, getNeutralLatency());
+    }
+
+    // ( 'neutralLatency' stands in for the latency score of a peer that has not answered yet )
+    private double getScore(RemotePeer peer, double neutralLatency) {
+        PeerStats peerStats = stats.get(peer.getAddress());
+        if (peerStats == null) {
+            return Math.max(MIN_SCORE, neutralLatency);
+        }
+
+        double averageRtt = peerStats.getAverageRtt();
+        double latency = averageRtt < 0 ? neutralLatency : latencyScore(averageRtt);
+        double reliability = 1 - peerStats.getErrorRate();
+        return Math.max(MIN_SCORE, latency * reliability * reliability);
+    }
+
+    // ( average latency score of the peers that have answered )
+    private double getNeutralLatency() {
+        double total = 0;
+        int answered = 0;
+        for (PeerStats peerStats : stats.values()) {
+            double averageRtt = peerStats.getAverageRtt();
+            if (averageRtt >= 0) {
+                total += latencyScore(averageRtt);
+                answered++;
+            }
+        }
+        return answered == 0 ? DEFAULT_NEUTRAL_SCORE : total / answered;
+    }
+
+    private static double latencyScore(double averageRtt) {
+        return 1 / (1 + averageRtt / RTT_REFERENCE);
+    }
+
+    // Methods
+    public void recordSuccess(RemotePeer peer, long rttNanos) {
+        getStats(peer).recordSuccess(rttNanos / 1_000_000.0);
+    }
+
+    public void recordFailure(RemotePeer peer) {
+        PeerStats peerStats = getStats(peer);
+        int failuresInARow = peerStats.recordFailure();
+
+        long unseenFor = System.currentTimeMillis() - peerStats.getLastSeen();
+        if (failuresInARow >= FAILURES_BEFORE_EVICTION && unseenFor > EVICT_AFTER_UNSEEN) {
+            if (knownPeers.removePeer(peer)) {
+                stats.remove(peer.getAddress());
+                logger.warn("Peer {} evicted after {} failures in a row", peer.getAddress(), failuresInARow);
+            }
+            return;
+        }
+
+        if (failuresInARow >= FAILURES_BEFORE_BENCH) {
+            int shift = Math.min(failuresInARow - FAILURES_BEFORE_BENCH, 16);
+            long benchFor = Math.min(MAX_BENCH, MIN_BENCH << shift);
+            peerStats.bench(benchFor);
+            logger.info("Peer {} benched for {}ms after {} failures in a row", peer.getAddress(), benchFor, failuresInARow);
+        }
+    }
+
+    /*
+    Chooses up to 'count' distinct known peers at random, weighted by score ( weighted reservoir sampling - each peer gets the key
+    random^(1 / score) and the highest keys are kept ). Benched peers are only chosen when there are not enough others.
+     */
+    public List<RemotePeer> selectPeers(int count) {
+        return selectPeers(count, peer -> true);
+    }
+
+    // ( only peers passing 'eligible' are chosen )
+    public List<RemotePeer> selectPeers(int count, Predicate<RemotePeer> eligible) {
+        List<RemotePeer> selected = new ArrayList<>();
+        if (count <= 0) {
+            return selected;
+        }
+
+        List<RemotePeer> benched = new ArrayList<>();
+        List<RemotePeer> available = new ArrayList<>();
+        for (RemotePeer peer : knownPeers.getKnownPeers()) {
+            if (!eligible.test(peer)) {
+                continue;
+            }
+
+            PeerStats peerStats = stats.get(peer.getAddress());
+            if (peerStats != null && peerStats.isBenched()) {
+                benched.add(peer);
+            } else {
+                available.add(peer);
+            }
+        }
+
+        selected.addAll(sample(available, count));
+        if (selected.size() < count) {
+            selected.addAll(sample(benched, count - selected.size()));
+        }
+        return selected;
+    }
+
+    private List<RemotePeer> sample(Collection<RemotePeer> peers, int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double neutralLatency = getNeutralLatency();
+
+        // ( min-heap on key, so the lowest of the kept keys is replaced first )
+        PriorityQueue<Map.Entry<Double, RemotePeer>> reservoir = new PriorityQueue<>(Map.Entry.comparingByKey());
+        for (RemotePeer peer : peers) {
+            double key = Math.pow(random.nextDouble(), 1 / getScore(peer, neutralLatency));
+            if (reservoir.size() < count) {
+                reservoir.add(Map.entry(key, peer));
+            } else if (key > reservoir.peek().getKey()) {
+                reservoir.poll();
+                reservoir.add(Map.entry(key, peer));
+            }
+        }
+
+        List<RemotePeer> sampled = new ArrayList<>();
+        for (Map.Entry<Double, RemotePeer> entry : reservoir) {
+            sampled.add(entry.getValue());
+        }
+        return sampled;
+    }
+}
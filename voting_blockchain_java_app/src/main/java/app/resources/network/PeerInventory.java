@@ -0,0 +1,98 @@
+package app.resources.network;
+
+import app.resources.network.resources.RemotePeer;
+import app.resources.util.BloomFilter;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Message hashes each peer is known to have - it sent or relayed the message to us, we sent it the message, or it answered an inv
+saying it already had it. distributeSendMessage skips peers that have a message, and sends or announces it to the rest.
+
+Each peer gets a pair of Bloom filters. Hashes go into the current one; once it holds GENERATION_SIZE hashes it becomes the previous
+one and a new current one is started, so memory stays fixed and old hashes are forgotten. A false positive only means a peer is not
+sent a message it lacked - it still gets it from other peers, or by anti-entropy and sync.
+ */
+public class PeerInventory {
+    private static final int GENERATION_SIZE = 10_000;
+    private static final double FALSE_POSITIVE_RATE = 0.001;
+
+    // Fields
+    private final Map<String, Generations> inventories = new ConcurrentHashMap<>(); // host:port -> known hashes
+    private final Set<String> invUnsupported = ConcurrentHashMap.newKeySet(); // host:port of peers that reject inv
+
+    private final AtomicLong announced = new AtomicLong();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    // Getters
+    public boolean isKnown(RemotePeer peer, String hash) {
+        Generations generations = inventories.get(peer.getAddress());
+        return generations != null && generations.mightContain(hash);
+    }
+
+    // ( older peers reject inv - they are sent payloads directly )
+    public boolean supportsInv(RemotePeer peer) {
+        return !invUnsupported.contains(peer.getAddress());
+    }
+
+    public int getTrackedPeers() {
+        return inventories.size();
+    }
+
+    // ( invs sent - each carries a batch of hashes )
+    public long getAnnounced() {
+        return announced.get();
+    }
+
+    // ( payloads sent after the peer asked for them )
+    public long getRequested() {
+        return requested.get();
+    }
+
+    // ( payloads not sent - the peer already had them )
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    // Methods
+    public void markKnown(RemotePeer peer, String hash) {
+        inventories.computeIfAbsent(peer.getAddress(), address -> new Generations()).add(hash);
+    }
+
+    public void markInvUnsupported(RemotePeer peer) {
+        invUnsupported.add(peer.getAddress());
+    }
+
+    public void recordAnnounced() {
+        announced.incrementAndGet();
+    }
+
+    public void recordRequested() {
+        requested.incrementAndGet();
+    }
+
+    public void recordSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    private static class Generations {
+        private BloomFilter current = new BloomFilter(GENERATION_SIZE, FALSE_POSITIVE_RATE);
+        private BloomFilter previous = new BloomFilter(GENERATION_SIZE, FALSE_POSITIVE_RATE);
+
+        synchronized void add(String hash) {
+            if (current.getCount() >= GENERATION_SIZE) {
+                previous = current;
+                current = new BloomFilter(GENERATION_SIZE, FALSE_POSITIVE_RATE);
+            }
+            current.add(hash);
+        }
+
+        synchronized boolean mightContain(String hash) {
+            return current.mightContain(hash) || previous.mightContain(hash);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package app.resources.network;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.*; // ByteArrayInputStream, ByteArrayOutputStream, DataInputStream, DataOutputStream, EOFException, IOException, OutputStream
+import java.nio.charset.StandardCharsets;
+import java.util.*; // Base64, HashMap, Map, Set
+
+/*
+Length-prefixed binary wire format for peer messages, agreed per connection with a JSON hello ( see PeerConnection and MessageReceiver ).
+
+Frame:      [ version : 1 byte ][ payload length : 4 bytes ][ payload ]
+            A payload over MAX_FRAME_SIZE is split over several frames - every frame but the last has CONTINUED set in its
+            version byte. Only responses are split ( a request_blockchain reply can exceed any fixed frame size, as JSON lines
+            have no limit ), requests must fit in one frame.
+Payload:    the message as a tree of tagged values, where
+                - keys and message types in KNOWN_STRINGS are written as one byte
+                - Base64 strings ( public keys, hashes, signatures ) are written as their raw bytes
+                - votes and blocks are written field by field, without keys
+
+Decoding gives back a JSONObject with the same keys, value types and key order, so data.toString() - which message hashes
+and signatures cover - is unchanged and messages can be relayed between binary and JSON peers.
+ */
+public class WireCodec {
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 5;
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024; // bytes
+    public static final int CONTINUED = 0x80; // Version flag - the payload continues in the next frame
+
+    // Negotiation ( JSON lines, sent before any frame )
+    public static final String HELLO = "wire_hello";
+    public static final String HELLO_RESPONSE = "wire_version";
+
+    // Value tags
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int DOUBLE = 5;
+    private static final int NUMBER = 6; // ( any other number, as its decimal string )
+    private static final int STRING = 7;
+    private static final int KNOWN_STRING = 8;
+    private static final int BASE64 = 9;
+    private static final int OBJECT = 10;
+    private static final int ARRAY = 11;
+    private static final int VOTE = 12;
+    private static final int BLOCK = 13;
+
+    // ( append only - a string's position is its code in version 1 )
+    private static final String[] KNOWN_STRINGS = {
+            // Envelope
+            "sender", "host", "port", "public_key", "message_type", "data", "hash", "signature", "accepted", "request_id", "reason", "timestamp",
+            // Message types
+            "send_vote", "send_voter", "send_block", "request_blockchain", "request_connection", "request_headers", "request_blocks_from", "request_header_chain", "ping",
+            // Blockchain
+            "voter", "voteValue", "previousHash", "nonce", "votes", "chain", "remainingVoters", "pendingVotes", "difficulty", "difficultyVersion",
+            // Sync
+            "blocks", "headers", "height", "tip_hash", "from_height", "previous_hash", "max_blocks", "max_headers",
+            // Batches
+            "send_votes",
+            // Relaying
+            "relayed_by",
+            // Anti-entropy
+            "request_vote_digest", "request_votes", "vote_ids",
+            // Inventory
+            "inv", "getdata", "hashes", "vote_filter", "bits", "hash_functions"
+    };
+    private static final Map<String, Integer> KNOWN_STRING_CODES = new HashMap<>();
+    static {
+        for (int i = 0; i < KNOWN_STRINGS.length; i++) {
+            KNOWN_STRING_CODES.put(KNOWN_STRINGS[i], i);
+        }
+    }
+
+    private static final Set<String> VOTE_KEYS = Set.of("voter", "voteValue", "signature");
+    private static final Set<String> UNSIGNED_VOTE_KEYS = Set.of("voter", "voteValue");
+    private static final Set<String> BLOCK_KEYS = Set.of("hash", "previousHash", "timestamp", "nonce", "votes");
+
+    // Frames
+
+    // ( the message as complete frames, headers included - one frame unless the payload is over MAX_FRAME_SIZE )
+    public static byte[] toFrame(JSONObject message) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(frame);
+
+        out.writeByte(VERSION);
+        out.writeInt(0); // ( length, filled in below )
+        writeValue(out, message);
+
+        byte[] bytes = frame.toByteArray();
+        int length = bytes.length - HEADER_SIZE;
+        if (length > MAX_FRAME_SIZE) {
+            return toContinuedFrames(bytes, HEADER_SIZE, length);
+        }
+        bytes[1] = (byte) (length >>> 24);
+        bytes[2] = (byte) (length >>> 16);
+        bytes[3] = (byte) (length >>> 8);
+        bytes[4] = (byte) length;
+        return bytes;
+    }
+
+    // ( splits a payload into MAX_FRAME_SIZE frames )
+    private static byte[] toContinuedFrames(byte[] bytes, int offset, int length) throws IOException {
+        int frames = (length + MAX_FRAME_SIZE - 1) / MAX_FRAME_SIZE;
+        ByteArrayOutputStream framed = new ByteArrayOutputStream(length + (frames * HEADER_SIZE));
+        DataOutputStream out = new DataOutputStream(framed);
+
+        for (int position = 0; position < length; position += MAX_FRAME_SIZE) {
+            int frameLength = Math.min(MAX_FRAME_SIZE, length - position);
+            boolean last = position + frameLength == length;
+
+            out.writeByte(last ? VERSION : VERSION | CONTINUED);
+            out.writeInt(frameLength);
+            out.write(bytes, offset + position, frameLength);
+        }
+        return framed.toByteArray();
+    }
+
+    public static void writeFrame(OutputStream out, JSONObject message) throws IOException {
+        out.write(toFrame(message));
+        out.flush();
+    }
+
+    // ( next message from the stream, joining continued frames, or null at end of stream )
+    public static JSONObject readFrame(DataInputStream in) throws IOException {
+        ByteArrayOutputStream continued = null;
+
+        while (true) {
+            int version = in.read();
+            if (version == -1) {
+                if (continued != null) {
+                    throw new EOFException("Stream ended inside a continued frame");
+                }
+                return null;
+            }
+            if ((version & ~CONTINUED) != VERSION) {
+                throw new IOException("Unsupported frame version " + version);
+            }
+
+            int length = in.readInt();
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame length " + length);
+            }
+
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+
+            if ((version & CONTINUED) != 0) {
+                if (continued == null) {
+                    continued = new ByteArrayOutputStream();
+                }
+                continued.write(payload);
+                continue;
+            }
+
+            if (continued == null) {
+                return decode(payload);
+            }
+            continued.write(payload);
+            return decode(continued.toByteArray());
+        }
+    }
+
+    // ( frame payload, without the header )
+    public static JSONObject decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Object value = readValue(in);
+        if (!(value instanceof JSONObject)) {
+            throw new IOException("Frame does not contain a message");
+        }
+        return (JSONObject) value;
+    }
+
+    // Values
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Number) {
+            out.writeByte(NUMBER);
+            writeRawString(out, value.toString());
+        } else if (value instanceof String) {
+            writeString(out, (String) value);
+        } else if (value instanceof JSONObject) {
+            writeObject(out, (JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            out.writeByte(ARRAY);
+            writeLength(out, array.length());
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(out, array.opt(i));
+            }
+        } else {
+            throw new IOException("Unsupported value type " + value.getClass().getSimpleName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL: return JSONObject.NULL;
+            case TRUE: return Boolean.TRUE;
+            case FALSE: return Boolean.FALSE;
+            case INT: return in.readInt();
+            case LONG: return in.readLong();
+            case DOUBLE: return in.readDouble();
+            case NUMBER: return JSONObject.stringToValue(readRawString(in));
+            case STRING: case KNOWN_STRING: case BASE64: return readString(in, tag);
+            case OBJECT: {
+                int size = readLength(in);
+                JSONObject object = new JSONObject();
+                for (int i = 0; i < size; i++) {
+                    String key = readString(in, in.readUnsignedByte());
+                    object.put(key, readValue(in));
+                }
+                return object;
+            }
+            case ARRAY: {
+                int size = readLength(in);
+                JSONArray array = new JSONArray();
+                for (int i = 0; i < size; i++) {
+                    array.put(readValue(in));
+                }
+                return array;
+            }
+            case VOTE: return readVote(in);
+            case BLOCK: return readBlock(in);
+            default: throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    private static void writeObject(DataOutputStream out, JSONObject object) throws IOException {
+        if (isVote(object)) {
+            out.writeByte(VOTE);
+            writeVote(out, object);
+            return;
+        }
+        if (isBlock(object)) {
+            out.writeByte(BLOCK);
+            writeBlock(out, object);
+            return;
+        }
+
+        // ( keys in iteration order, so the decoded object iterates - and prints - the same )
+        out.writeByte(OBJECT);
+        writeLength(out, object.length());
+        for (String key : object.keySet()) {
+            writeString(out, key);
+            writeValue(out, object.opt(key));
+        }
+    }
+
+    // Votes ( as BlockchainParser.VoteToJSON writes them )
+    private static boolean isVote(JSONObject object) {
+        Set<String> keys = object.keySet();
+        if (!keys.equals(VOTE_KEYS) && !keys.equals(UNSIGNED_VOTE_KEYS)) {
+            return false;
+        }
+        return object.opt("voter") instanceof String && object.opt("voteValue") instanceof Integer && (!object.has("signature") || object.opt("signature") instanceof String);
+    }
+
+    private static void writeVote(DataOutputStream out, JSONObject vote) throws IOException {
+        boolean signed = vote.has("signature");
+        out.writeBoolean(signed);
+        writeString(out, vote.getString("voter"));
+        out.writeInt(vote.getInt("voteValue"));
+        if (signed) {
+            writeString(out, vote.getString("signature"));
+        }
+    }
+
+    private static JSONObject readVote(DataInputStream in) throws IOException {
+        boolean signed = in.readBoolean();
+
+        JSONObject vote = new JSONObject();
+        vote.put("voter", readString(in, in.readUnsignedByte()));
+        vote.put("voteValue", in.readInt());
+        if (signed) {
+            vote.put("signature", readString(in, in.readUnsignedByte()));
+        }
+        return vote;
+    }
+
+    // Blocks ( as BlockchainParser.BlockToJSON writes them )
+    private static boolean isBlock(JSONObject object) {
+        if (!object.keySet().equals(BLOCK_KEYS)) {
+            return false;
+        }
+        if (!(object.opt("hash") instanceof String) || !(object.opt("previousHash") instanceof String) || !(object.opt("timestamp") instanceof Long) || !(object.opt("nonce") instanceof Integer) || !(object.opt("votes") instanceof JSONArray)) {
+            return false;
+        }
+
+        JSONArray votes = object.getJSONArray("votes");
+        for (int i = 0; i < votes.length(); i++) {
+            if (!(votes.opt(i) instanceof JSONObject) || !isVote(votes.getJSONObject(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeBlock(DataOutputStream out, JSONObject block) throws IOException {
+        writeString(out, block.getString("hash"));
+        writeString(out, block.getString("previousHash"));
+        out.writeLong(block.getLong("timestamp"));
+        out.writeInt(block.getInt("nonce"));
+
+        JSONArray votes = block.getJSONArray("votes");
+        writeLength(out, votes.length());
+        for (int i = 0; i < votes.length(); i++) {
+            writeVote(out, votes.getJSONObject(i));
+        }
+    }
+
+    private static JSONObject readBlock(DataInputStream in) throws IOException {
+        JSONObject block = new JSONObject();
+        block.put("hash", readString(in, in.readUnsignedByte()));
+        block.put("previousHash", readString(in, in.readUnsignedByte()));
+        block.put("timestamp", in.readLong());
+        block.put("nonce", in.readInt());
+
+        int size = readLength(in);
+        JSONArray votes = new JSONArray();
+        for (int i = 0; i < size; i++) {
+            votes.put(readVote(in));
+        }
+        block.put("votes", votes);
+        return block;
+    }
+
+    // Strings ( tag included )
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        Integer code = KNOWN_STRING_CODES.get(string);
+        if (code != null) {
+            out.writeByte(KNOWN_STRING);
+            out.writeByte(code);
+            return;
+        }
+
+        byte[] decoded = decodeBase64(string);
+        if (decoded != null) {
+            out.writeByte(BASE64);
+            writeLength(out, decoded.length);
+            out.write(decoded);
+            return;
+        }
+
+        out.writeByte(STRING);
+        writeRawString(out, string);
+    }
+
+    private static String readString(DataInputStream in, int tag) throws IOException {
+        switch (tag) {
+            case KNOWN_STRING: {
+                int code = in.readUnsignedByte();
+                if (code >= KNOWN_STRINGS.length) {
+                    throw new IOException("Unknown string code " + code);
+                }
+                return KNOWN_STRINGS[code];
+            }
+            case BASE64: {
+                byte[] decoded = new byte[readLength(in)];
+                in.readFully(decoded);
+                return Base64.getEncoder().encodeToString(decoded);
+            }
+            case STRING: return readRawString(in);
+            default: throw new IOException("Expected string but found tag " + tag);
+        }
+    }
+
+    private static void writeRawString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeLength(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readRawString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ( raw bytes if the string is canonical Base64 long enough to be worth it, otherwise null )
+    private static byte[] decodeBase64(String string) {
+        if (string.length() < 16 || string.length() % 4 != 0) {
+            return null;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            boolean base64Char = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '/' || c == '=';
+            if (!base64Char) {
+                return null;
+            }
+        }
+
+        byte[] decoded;
+        try {
+            decoded = Base64.getDecoder().decode(string);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return Base64.getEncoder().encodeToString(decoded).equals(string) ? decoded : null;
+    }
+
+    // Lengths ( unsigned varint )
+    private static void writeLength(DataOutputStream out, int length) throws IOException {
+        while ((length & ~0x7F) != 0) {
+            out.writeByte((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.writeByte(length);
+    }
+
+    // ( a length or count can never exceed the bytes left in the payload, as every element takes at least one byte )
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (length < 0 || length > in.available()) {
+                    throw new IOException("Invalid length " + length);
+                }
+                return length;
+            }
+        }
+        throw new IOException("Malformed length");
+    }
+}
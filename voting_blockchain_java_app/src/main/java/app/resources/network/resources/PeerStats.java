@@ -0,0 +1,103 @@
+package app.resources.network.resources;
+
+/*
+Round trip time, error and last-seen statistics of one peer ( see PeerHealth ).
+
+The error rate is decayed exponentially with time ( ERROR_HALF_LIFE ), so old failures stop counting against a peer that has
+recovered. It starts from PRIOR_REQUESTS error free requests, so a new peer's first failure does not make it look dead.
+ */
+public class PeerStats {
+    private static final double RTT_SMOOTHING = 0.2; // Weight of the newest sample in the average round trip time
+    private static final double ERROR_HALF_LIFE = 10 * 60_000; // ms - time for a request to count half as much in the error rate
+    private static final double PRIOR_REQUESTS = 2; // Error free requests every peer starts with
+
+    private final String address;
+
+    private double averageRtt = -1; // ms, -1 until the first response
+    private long successes;
+    private long failures;
+    private int consecutiveFailures;
+    private double decayedRequests; // ( as of lastDecay )
+    private double decayedFailures; // ( as of lastDecay )
+    private long lastDecay = System.currentTimeMillis();
+    private long lastSeen; // System.currentTimeMillis() of the last response, 0 if never
+    private long benchedUntil;
+
+    // Initialisation
+    public PeerStats(String address) {
+        this.address = address;
+    }
+
+    // Getters
+    public String getAddress() {
+        return address;
+    }
+
+    public synchronized double getAverageRtt() {
+        return averageRtt;
+    }
+
+    public synchronized long getSuccesses() {
+        return successes;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized long getLastSeen() {
+        return lastSeen;
+    }
+
+    public synchronized long getBenchedUntil() {
+        return benchedUntil;
+    }
+
+    public synchronized boolean isBenched() {
+        return System.currentTimeMillis() < benchedUntil;
+    }
+
+    // ( decayed share of requests that failed, 0 with no requests yet )
+    public synchronized double getErrorRate() {
+        double decay = decayFactor(System.currentTimeMillis());
+        return (decayedFailures * decay) / ((decayedRequests * decay) + PRIOR_REQUESTS);
+    }
+
+    // Methods
+    public synchronized void recordSuccess(double rtt) {
+        successes++;
+        recordRequest(false);
+        consecutiveFailures = 0;
+        benchedUntil = 0;
+        lastSeen = System.currentTimeMillis();
+        averageRtt = averageRtt < 0 ? rtt : (RTT_SMOOTHING * rtt) + ((1 - RTT_SMOOTHING) * averageRtt);
+    }
+
+    // ( returns the number of failures in a row )
+    public synchronized int recordFailure() {
+        failures++;
+        recordRequest(true);
+        return ++consecutiveFailures;
+    }
+
+    // ( callers hold this )
+    private void recordRequest(boolean failed) {
+        long now = System.currentTimeMillis();
+        double decay = decayFactor(now);
+        decayedRequests = (decayedRequests * decay) + 1;
+        decayedFailures = (decayedFailures * decay) + (failed ? 1 : 0);
+        lastDecay = now;
+    }
+
+    private double decayFactor(long now) {
+        return Math.pow(0.5, Math.max(0, now - lastDecay) / ERROR_HALF_LIFE);
+    }
+
+    public synchronized void bench(long durationMillis) {
+        benchedUntil = System.currentTimeMillis() + durationMillis;
+    }
+}
@@ -6,6 +6,7 @@ import app.resources.util.Cryptography;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Objects;
 
 public class RemotePeer{
 
@@ -33,9 +34,25 @@ public class RemotePeer{
         return publicKey;
     }
 
+    // ( host:port, the key peers are indexed and connected by )
+    public String getAddress() {
+        return host + ":" + port;
+    }
+
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RemotePeer)) {
+            return false;
+        }
         RemotePeer remotePeer = (RemotePeer) o;
         return (getHost().equals(remotePeer.getHost())) && (getPort() == remotePeer.getPort()) && (getPublicKey().equals(remotePeer.getPublicKey()));
     }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(host, port, publicKey);
+    }
 }
\ No newline at end of file
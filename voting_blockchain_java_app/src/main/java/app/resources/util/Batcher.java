@@ -0,0 +1,101 @@
+package app.resources.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*; // ArrayList, HashMap, List, Map
+import java.util.concurrent.*; // Executors, ScheduledExecutorService, TimeUnit
+import java.util.function.BiConsumer;
+
+/*
+Collects items into batches by key, so one message carries many items ( outgoing votes, and the hashes announced to each peer
+by inv - see NetworkManager ).
+
+A key's batch is sent once it holds 'maxBatchSize' items, or 'lingerMillis' after its first item arrived, whichever is first.
+ */
+public class Batcher<K, T> {
+    private static final long DEFAULT_LINGER = 50; // ms
+    private static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    // Fields
+    private final Logger logger = LoggerFactory.getLogger(Batcher.class);
+
+    private final String name; // ( for the timer thread and logs )
+    private final BiConsumer<K, List<T>> sendBatch;
+    private final long lingerMillis;
+    private final int maxBatchSize;
+
+    private final ScheduledExecutorService lingerTimer;
+    private final Map<K, List<T>> batches = new HashMap<>(); // ( guarded by this )
+
+    // Initialisation
+    public Batcher(String name, BiConsumer<K, List<T>> sendBatch) {
+        this(name, sendBatch, DEFAULT_LINGER, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public Batcher(String name, BiConsumer<K, List<T>> sendBatch, long lingerMillis, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+
+        this.name = name;
+        this.sendBatch = sendBatch;
+        this.lingerMillis = lingerMillis;
+        this.maxBatchSize = maxBatchSize;
+
+        this.lingerTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-Timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Getters
+    public long getLingerMillis() {
+        return lingerMillis;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    // Methods
+    public void add(K key, T item) {
+        List<T> fullBatch = null;
+
+        synchronized (this) {
+            List<T> batch = batches.computeIfAbsent(key, newKey -> new ArrayList<>());
+            batch.add(item);
+
+            if (batch.size() >= maxBatchSize) {
+                fullBatch = batches.remove(key);
+            } else if (batch.size() == 1) {
+                lingerTimer.schedule(() -> flush(key, batch), lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (fullBatch != null) {
+            send(key, fullBatch);
+        }
+    }
+
+    // ( sends the batch if it is still the one being filled - a full batch has already been sent )
+    private void flush(K key, List<T> lingeringBatch) {
+        synchronized (this) {
+            if (batches.get(key) != lingeringBatch) {
+                return;
+            }
+            batches.remove(key);
+        }
+        send(key, lingeringBatch);
+    }
+
+    private void send(K key, List<T> items) {
+        logger.debug("{} sending batch of {} items", name, items.size());
+        try {
+            sendBatch.accept(key, items);
+        } catch (Exception e) {
+            logger.error("{} failed to send batch", name, e);
+        }
+    }
+}
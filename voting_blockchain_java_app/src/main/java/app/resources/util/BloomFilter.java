@@ -0,0 +1,114 @@
+package app.resources.util;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+Thread-safe Bloom filter of strings - answers "possibly added" or "definitely not added" in a fixed number of bits.
+
+Each string sets numHashes bits, at positions h1 + i * h2 ( double hashing of two 64-bit hashes of its UTF-8 bytes ).
+ */
+public class BloomFilter {
+    private static final int MAX_HASHES = 32;
+
+    // Fields
+    private final byte[] bits;
+    private final int numBits;
+    private final int numHashes;
+    private int count;
+
+    // Initialisation
+
+    // ( sized for 'expectedItems' strings at the given false positive rate )
+    public BloomFilter(int expectedItems, double falsePositiveRate) {
+        this(new byte[optimalBytes(expectedItems, falsePositiveRate)], optimalHashes(expectedItems, falsePositiveRate));
+    }
+
+    // ( filter received from a peer - see NetworkParser.JSONToBloomFilter )
+    public BloomFilter(byte[] bits, int numHashes) {
+        if (bits.length == 0) {
+            throw new IllegalArgumentException("Bloom filter must have at least one byte");
+        }
+        if (numHashes < 1 || numHashes > MAX_HASHES) {
+            throw new IllegalArgumentException("Bloom filter must use between 1 and " + MAX_HASHES + " hashes");
+        }
+
+        this.bits = bits;
+        this.numBits = bits.length * 8;
+        this.numHashes = numHashes;
+    }
+
+    // Getters
+    public int getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    // ( strings added to this instance - not known for filters received from a peer )
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized byte[] getBits() {
+        return bits.clone();
+    }
+
+    // Methods
+    public synchronized void add(String item) {
+        long h1 = hash(item);
+        long h2 = mix(h1) | 1; // ( odd, so positions do not repeat before numBits )
+        for (int i = 0; i < numHashes; i++) {
+            int position = (int) Math.floorMod(h1 + i * h2, (long) numBits);
+            bits[position >>> 3] |= (byte) (1 << (position & 7));
+        }
+        count++;
+    }
+
+    public synchronized boolean mightContain(String item) {
+        long h1 = hash(item);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            int position = (int) Math.floorMod(h1 + i * h2, (long) numBits);
+            if ((bits[position >>> 3] & (1 << (position & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Helpers
+
+    // ( FNV-1a )
+    private static long hash(String item) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : item.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // ( MurmurHash3 finaliser )
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    // ( m = -n ln(p) / ln(2)^2 bits, rounded up to whole bytes )
+    private static int optimalBytes(int expectedItems, double falsePositiveRate) {
+        double bitCount = -Math.max(1, expectedItems) * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        return (int) Math.max(8, Math.ceil(bitCount / 8));
+    }
+
+    // ( k = (m / n) ln(2) hashes )
+    private static int optimalHashes(int expectedItems, double falsePositiveRate) {
+        double bitsPerItem = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        return (int) Math.min(MAX_HASHES, Math.max(1, Math.round(bitsPerItem * Math.log(2))));
+    }
+}
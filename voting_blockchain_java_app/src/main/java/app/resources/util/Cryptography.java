@@ -14,6 +14,43 @@ public class Cryptography {
     private static final String signatureAlgorithm = "SHA256withRSA";
     private static final String keyAlgorithm = "RSA";
     private static final int keySize = 2048;
+    private static final String hashAlgorithm = "SHA-256";
+
+    // ( parsed voter and peer public keys, keyed by their Base64 X.509 encoding )
+    private static final BoundedCache<String, PublicKey> publicKeyCache = new BoundedCache<>(4096);
+
+    // ( Signature and MessageDigest are not thread safe, so each thread reuses its own instead of a provider lookup per call )
+    private static final ThreadLocal<Signature> signatureEngines = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance(signatureAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(signatureAlgorithm + " algorithm is not available", e);
+        }
+    });
+
+    private static final ThreadLocal<MessageDigest> digestEngines = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(hashAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(hashAlgorithm + " algorithm is not available", e);
+        }
+    });
+
+    public static BoundedCache<String, PublicKey> getPublicKeyCache() {
+        return publicKeyCache;
+    }
+
+    // ( this thread's SHA256withRSA engine - initSign / initVerify reset it before each use )
+    public static Signature signatureEngine() {
+        return signatureEngines.get();
+    }
+
+    // ( this thread's SHA-256 engine, reset and ready for use )
+    public static MessageDigest digestEngine() {
+        MessageDigest md = digestEngines.get();
+        md.reset(); // Discards anything left by a previous caller that failed part way
+        return md;
+    }
 
     public static KeyPair generateKeyPair() throws NoSuchAlgorithmException {
         KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(keyAlgorithm); // getInstance throws NoSuchAlgorithmException
@@ -24,7 +61,7 @@ public class Cryptography {
     public static String sign(String data, String privateKeyStr) throws InvalidException {
         try {
             PrivateKey privateKey = stringToPrivateKey(privateKeyStr);
-            Signature signer = Signature.getInstance(signatureAlgorithm); // getInstance throws NoSuchAlgorithmException
+            Signature signer = signatureEngine();
             signer.initSign(privateKey); // initSign throws InvalidKeyException
             signer.update(data.getBytes()); // update throws SignatureException
             return Base64.getEncoder().encodeToString(signer.sign()); // sign throws SignatureException
@@ -36,7 +73,7 @@ public class Cryptography {
     public static boolean verify(String data, String signature, String publicKeyStr) throws InvalidException {
         try {
             PublicKey publicKey = stringToPublicKey(publicKeyStr);
-            Signature verifier = Signature.getInstance(signatureAlgorithm); // getInstance throws NoSuchAlgorithmException
+            Signature verifier = signatureEngine();
             verifier.initVerify(publicKey); // initVerify throws InvalidKeyException
             verifier.update(data.getBytes()); // update throws SignatureException
 
@@ -56,14 +93,23 @@ public class Cryptography {
     }
 
     public static PublicKey stringToPublicKey(String publicKeyString) throws InvalidException {
+        PublicKey cachedKey = publicKeyCache.get(publicKeyString);
+        if (cachedKey != null) {
+            return cachedKey;
+        }
+
+        PublicKey publicKey;
         try {
             byte[] keyBytes = Base64.getDecoder().decode(publicKeyString);
             X509EncodedKeySpec spec = new X509EncodedKeySpec(keyBytes);
             KeyFactory keyFactory = KeyFactory.getInstance(keyAlgorithm); // getInstance throws NoSuchAlgorithmException
-            return keyFactory.generatePublic(spec); // generatePublic throws InvalidKeySpecException
+            publicKey = keyFactory.generatePublic(spec); // generatePublic throws InvalidKeySpecException
         } catch (Exception e) {
             throw new InvalidException(e.getMessage());
         }
+
+        publicKeyCache.put(publicKeyString, publicKey); // Only successfully parsed keys are cached
+        return publicKey;
     }
 
     public static PrivateKey stringToPrivateKey(String privateKeyString) throws InvalidException {
@@ -78,7 +124,7 @@ public class Cryptography {
     }
 
     public static String hash(String data) throws NoSuchAlgorithmException{
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        MessageDigest md = digestEngine();
         byte[] hash = md.digest(data.getBytes());
         return Base64.getEncoder().encodeToString(hash);
 
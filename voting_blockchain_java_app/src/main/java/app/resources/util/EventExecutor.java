@@ -0,0 +1,121 @@
+package app.resources.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*; // ExecutorService, Executors, LinkedBlockingQueue, ThreadPoolExecutor, TimeUnit
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Runs short-lived event tasks ( handling a vote, voter or block, sending a message to a peer ) instead of a new thread per event.
+
+The mode is set with -Dnode.executor:
+    virtual  - one virtual thread per task ( JDK 21+ )
+    platform - a bounded pool of platform threads, running tasks on the submitting thread once its queue is full
+    auto     - virtual when the JDK supports it, otherwise platform ( default )
+ */
+public class EventExecutor {
+    private static final int PLATFORM_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 4);
+    private static final int PLATFORM_QUEUE_SIZE = 10_000;
+
+    // Fields
+    private final Logger logger = LoggerFactory.getLogger(EventExecutor.class);
+
+    private final String mode;
+    private final ExecutorService executor;
+
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+    private final AtomicLong completedTasks = new AtomicLong();
+    private final AtomicLong failedTasks = new AtomicLong();
+
+    // Initialisation ( mode from -Dnode.executor )
+    public EventExecutor() {
+        this(System.getProperty("node.executor", "auto"));
+    }
+
+    public EventExecutor(String requestedMode) {
+        ExecutorService virtualExecutor = null;
+        if (!requestedMode.equals("platform")) {
+            virtualExecutor = newVirtualThreadExecutor();
+            if (virtualExecutor == null && requestedMode.equals("virtual")) {
+                logger.warn("Virtual threads are not supported by this JDK, using platform threads");
+            }
+        }
+
+        if (virtualExecutor != null) {
+            this.mode = "virtual";
+            this.executor = virtualExecutor;
+        } else {
+            this.mode = "platform";
+            this.executor = newPlatformThreadExecutor();
+        }
+        logger.info("Event executor using {} threads", mode);
+    }
+
+    // Getters
+    public String getMode() {
+        return mode;
+    }
+
+    public int getActiveTasks() {
+        return activeTasks.get();
+    }
+
+    public int getQueuedTasks() {
+        return queuedTasks.get();
+    }
+
+    public long getCompletedTasks() {
+        return completedTasks.get();
+    }
+
+    public long getFailedTasks() {
+        return failedTasks.get();
+    }
+
+    // Methods
+    public void submit(Runnable task) {
+        queuedTasks.incrementAndGet();
+        executor.execute(() -> {
+            queuedTasks.decrementAndGet();
+            activeTasks.incrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                failedTasks.incrementAndGet();
+                logger.error("Event task failed", e);
+            } finally {
+                activeTasks.decrementAndGet();
+                completedTasks.incrementAndGet();
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // ( Executors.newVirtualThreadPerTaskExecutor(), looked up at runtime as the project is compiled for an older JDK - null if unavailable )
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformThreadExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(PLATFORM_THREADS, PLATFORM_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(PLATFORM_QUEUE_SIZE), runnable -> {
+            Thread thread = new Thread(runnable, "Event-Worker-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy()); // ( backpressure - the submitting thread runs the task itself )
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}